@@ -36,12 +36,20 @@ import android.support.v4.app.NotificationCompat;
 import android.text.format.DateFormat;
 
 public class MainService extends Service implements Ipc {
-    private final SmoothProxy proxy = new SmoothProxy("127.0.0.1", 8888, this);
     private final IBinder binder = new LocalBinder();
+    private SmoothProxy proxy;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        proxy = new SmoothProxy("127.0.0.1", 8888, this);
+    }
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
         try {
+            // A sticky restart delivers no intent and no bound activity, so reload what it would have set.
+            if (intent == null) loadPreferences(getSharedPreferences(MainActivity.class.getSimpleName(), MODE_PRIVATE));
             proxy.start();
             startForeground(1, getNotification("Ready to serve."));
         } catch (Exception e) {
@@ -83,6 +91,8 @@ public class MainService extends Service implements Ipc {
     }
 
     void loadPreferences(SharedPreferences preferences) {
+        proxy.setCache(preferences.getInt("segmentcache", 32));
+        proxy.setPrefetch(preferences.getInt("prefetch", 3));
         proxy.init(
                 preferences.getString("username", null),
                 preferences.getString("password", null),
@@ -90,6 +100,7 @@ public class MainService extends Service implements Ipc {
                 preferences.getString("server", null),
                 preferences.getInt("quality", R.id.r_hd) - R.id.r_hd + 1
         );
+        proxy.addAccounts(preferences.getString("accounts", null));
     }
 
     class LocalBinder extends Binder {
@@ -0,0 +1,220 @@
+/*
+    MIT License
+
+    Copyright (c) 2017 mr-notorious
+
+    Permission is hereby granted, free of charge, to any person obtaining a copy
+    of this software and associated documentation files (the "Software"), to deal
+    in the Software without restriction, including without limitation the rights
+    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+    copies of the Software, and to permit persons to whom the Software is
+    furnished to do so, subject to the following conditions:
+
+    The above copyright notice and this permission notice shall be included in all
+    copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+    SOFTWARE.
+ */
+
+package com.notorious.smoothproxy;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import fi.iki.elonen.NanoHTTPD;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+
+final class MockUpstream extends NanoHTTPD {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    static final int CHANNELS = 150;
+    static final int EVENTS = 40;
+    static final int SEGMENT = 1024 * 1024;
+    final AtomicLong requests = new AtomicLong();
+    final byte[] channels;
+    final byte[] feed;
+    final byte[] epg;
+    final byte[] segment;
+
+    private MockUpstream(int port, File dir) throws IOException {
+        super("127.0.0.1", port);
+        channels = load(dir, "channels.json", getChannels());
+        feed = load(dir, "feed.json", getFeed());
+        epg = load(dir, "xmltv1.xml.gz", getEpg());
+        segment = load(dir, "segment.ts", getSegment());
+    }
+
+    static MockUpstream launch() throws IOException {
+        String dir = System.getProperty("smoothproxy.payloads");
+        MockUpstream m = new MockUpstream(getPort(), dir != null ? new File(dir) : null);
+        m.start(NanoHTTPD.SOCKET_READ_TIMEOUT, true);
+        return m;
+    }
+
+    static int getPort() throws IOException {
+        ServerSocket s = new ServerSocket(0);
+        try {
+            return s.getLocalPort();
+        } finally {
+            s.close();
+        }
+    }
+
+    OkHttpClient redirect(OkHttpClient client) {
+        return client.newBuilder().addInterceptor(new Interceptor() {
+            @Override
+            public okhttp3.Response intercept(Chain chain) throws IOException {
+                Request r = chain.request();
+                HttpUrl url = r.url().newBuilder().scheme("http").host("127.0.0.1").port(getListeningPort()).build();
+                return chain.proceed(r.newBuilder().url(url).build());
+            }
+        }).build();
+    }
+
+    @Override
+    public Response serve(IHTTPSession session) {
+        requests.incrementAndGet();
+        String path = session.getUri();
+
+        if (path.endsWith("/channels.json")) return getBytes("application/json", channels);
+        if (path.endsWith("/feed.json")) return getBytes("application/json", feed);
+        if (path.endsWith("/xmltv1.xml.gz")) return getBytes("application/x-gzip", epg);
+        if (path.endsWith(".ts")) return getBytes("video/mp2t", segment);
+        if (path.endsWith("hash_api.php") || path.endsWith("loginForm.php")) {
+            return newFixedLengthResponse(Response.Status.OK, "application/json", "{\"code\":1,\"hash\":\"benchmark\"}");
+        }
+        if (path.endsWith("/playlist.m3u8")) {
+            return newFixedLengthResponse(Response.Status.OK, "application/vnd.apple.mpegurl",
+                    "#EXTM3U\n#EXT-X-VERSION:3\n#EXT-X-STREAM-INF:BANDWIDTH=2500000\nchunks.m3u8?nimblesessionid=1\n");
+        }
+        if (path.endsWith("/chunks.m3u8")) {
+            long seq = System.currentTimeMillis() / 10000;
+            StringBuilder out = new StringBuilder("#EXTM3U\n#EXT-X-VERSION:3\n#EXT-X-TARGETDURATION:10\n#EXT-X-MEDIA-SEQUENCE:").append(seq).append('\n');
+            for (long i = seq; i < seq + 6; i++) out.append("#EXTINF:10.000,\nl_").append(i).append(".ts?nimblesessionid=1\n");
+            return newFixedLengthResponse(Response.Status.OK, "application/vnd.apple.mpegurl", out.toString());
+        }
+        return newFixedLengthResponse(Response.Status.NOT_FOUND, NanoHTTPD.MIME_PLAINTEXT, "Not Found");
+    }
+
+    private static Response getBytes(String type, byte[] bytes) {
+        return newFixedLengthResponse(Response.Status.OK, type, new ByteArrayInputStream(bytes), bytes.length);
+    }
+
+    private static byte[] load(File dir, String name, byte[] fallback) throws IOException {
+        File f = dir != null ? new File(dir, name) : null;
+        if (f == null || !f.isFile()) return fallback;
+
+        byte[] b = new byte[(int) f.length()];
+        InputStream in = new FileInputStream(f);
+        try {
+            for (int off = 0, n; off < b.length && (n = in.read(b, off, b.length - off)) != -1; off += n) ;
+        } finally {
+            in.close();
+        }
+        return b;
+    }
+
+    static byte[] getChannels() {
+        JsonObject map = new JsonObject();
+        for (int i = 1; i <= CHANNELS; i++) {
+            JsonObject jO = new JsonObject();
+            jO.addProperty("247", i % 3 == 0 ? 0 : 1);
+            jO.addProperty("channum", i);
+            jO.addProperty("xmltvid", "I" + (10000 + i) + ".json.schedulesdirect.org");
+            jO.addProperty("channame", "Channel &amp; " + i);
+            map.add(String.valueOf(i), jO);
+        }
+        return map.toString().getBytes(UTF_8);
+    }
+
+    static byte[] getFeed() {
+        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
+        sdf.setTimeZone(TimeZone.getTimeZone("America/New_York"));
+        String[] categories = {"Soccer", "NFL", "NHL", "NBA", "MMA", "Tennis", ""};
+        Random random = new Random(42);
+        long now = System.currentTimeMillis();
+
+        JsonObject map = new JsonObject();
+        for (int i = 1; i <= CHANNELS; i++) {
+            JsonArray items = new JsonArray();
+            for (int j = 0; j < EVENTS; j++) {
+                JsonObject jO = new JsonObject();
+                jO.addProperty("time", sdf.format(new Date(now + (random.nextInt(72) - 36) * 3600000L)));
+                jO.addProperty("channel", String.valueOf(i));
+                jO.addProperty("category", categories[random.nextInt(categories.length)]);
+                jO.addProperty("quality", random.nextBoolean() ? "720p" : "");
+                jO.addProperty("language", random.nextBoolean() ? "English" : "");
+                jO.addProperty("name", "Event " + j + " &amp; Co, live");
+                items.add(jO);
+            }
+            JsonObject ch = new JsonObject();
+            ch.addProperty("channel_id", String.valueOf(i));
+            ch.addProperty("name", (i < 10 ? "0" : "") + i + " - Channel " + i);
+            ch.add("items", items);
+            map.add(String.valueOf(i), ch);
+        }
+        return map.toString().getBytes(UTF_8);
+    }
+
+    static byte[] getEpg() {
+        SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMddHHmmss Z", Locale.US);
+        long start = System.currentTimeMillis() / 3600000 * 3600000 - 6 * 3600000;
+
+        StringBuilder out = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<tv generator-info-name=\"mock\">\n");
+        for (int i = 1; i <= CHANNELS * 2; i++) {
+            out.append("<channel id=\"I").append(10000 + i).append(".json.schedulesdirect.org\">")
+                    .append("<display-name>Channel &amp; ").append(i).append("</display-name></channel>\n");
+        }
+        for (int i = 1; i <= CHANNELS * 2; i++) {
+            for (int j = 0; j < 72 * 2; j++) {
+                long time = start + j * 1800000L;
+                out.append("<programme start=\"").append(sdf.format(new Date(time)))
+                        .append("\" stop=\"").append(sdf.format(new Date(time + 1800000)))
+                        .append("\" channel=\"I").append(10000 + i).append(".json.schedulesdirect.org\">")
+                        .append("<title lang=\"en\">Programme ").append(j).append("</title>")
+                        .append("<desc lang=\"en\">Episode ").append(j).append(" of a show on channel ").append(i).append(".</desc></programme>\n");
+            }
+        }
+        out.append("</tv>\n");
+
+        try {
+            ByteArrayOutputStream b = new ByteArrayOutputStream();
+            GZIPOutputStream gz = new GZIPOutputStream(b);
+            gz.write(out.toString().getBytes(UTF_8));
+            gz.close();
+            return b.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] getSegment() {
+        byte[] b = new byte[SEGMENT];
+        new Random(7).nextBytes(b);
+        return b;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+    MIT License
+
+    Copyright (c) 2017 mr-notorious
+
+    Permission is hereby granted, free of charge, to any person obtaining a copy
+    of this software and associated documentation files (the "Software"), to deal
+    in the Software without restriction, including without limitation the rights
+    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+    copies of the Software, and to permit persons to whom the Software is
+    furnished to do so, subject to the following conditions:
+
+    The above copyright notice and this permission notice shall be included in all
+    copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+    SOFTWARE.
+ */
+
+package com.notorious.smoothproxy;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlaylistBenchmark {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private ChannelMap channelMap;
+    private JsonObject channels;
+    private byte[] feed;
+    private byte[] epg;
+    private Set<String> ids;
+    private long start;
+    private long end;
+
+    @Setup
+    public void setUp() {
+        channelMap = new ChannelMap(new Mirrors("http://127.0.0.1:1"), "127.0.0.1", 8888);
+        channels = new Gson().fromJson(new String(MockUpstream.getChannels(), UTF_8), JsonObject.class);
+        feed = MockUpstream.getFeed();
+        epg = MockUpstream.getEpg();
+        ids = new HashSet<>();
+        for (String key : channels.keySet()) ids.add(channels.getAsJsonObject(key).get("xmltvid").getAsString());
+
+        Calendar c = new GregorianCalendar();
+        c.set(Calendar.HOUR_OF_DAY, 0);
+        c.set(Calendar.MINUTE, 0);
+        c.set(Calendar.SECOND, 0);
+        c.set(Calendar.MILLISECOND, 0);
+        start = c.getTimeInMillis();
+        c.add(Calendar.DAY_OF_MONTH, 1);
+        end = c.getTimeInMillis();
+    }
+
+    @Benchmark
+    public String renderPlaylist() {
+        return channelMap.render(channels, false);
+    }
+
+    @Benchmark
+    public long filterEpg() throws Exception {
+        long now = System.currentTimeMillis();
+        CountingOutputStream out = new CountingOutputStream();
+        EpgFilter.filter(new GZIPInputStream(new ByteArrayInputStream(epg)), out, ids, now, now + 86400000);
+        return out.count;
+    }
+
+    @Benchmark
+    public List<Sports.Event> parseSports() throws Exception {
+        return Sports.read(new JsonReader(new InputStreamReader(new ByteArrayInputStream(feed), UTF_8)), start, end);
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
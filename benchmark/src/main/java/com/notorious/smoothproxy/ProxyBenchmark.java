@@ -0,0 +1,167 @@
+/*
+    MIT License
+
+    Copyright (c) 2017 mr-notorious
+
+    Permission is hereby granted, free of charge, to any person obtaining a copy
+    of this software and associated documentation files (the "Software"), to deal
+    in the Software without restriction, including without limitation the rights
+    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+    copies of the Software, and to permit persons to whom the Software is
+    furnished to do so, subject to the following conditions:
+
+    The above copyright notice and this permission notice shall be included in all
+    copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+    SOFTWARE.
+ */
+
+package com.notorious.smoothproxy;
+
+import com.google.gson.JsonObject;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import fi.iki.elonen.NanoHTTPD;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class ProxyBenchmark {
+    private final AtomicLong sequence = new AtomicLong();
+    private MockUpstream upstream;
+    private SmoothProxy proxy;
+    private OkHttpClient client;
+    private String origin;
+    private String base;
+
+    @Setup
+    public void setUp() throws Exception {
+        upstream = MockUpstream.launch();
+        HttpClient.setClient(upstream.redirect(HttpClient.getClient()));
+
+        final File cache = new File(System.getProperty("java.io.tmpdir"), "smoothproxy-benchmark");
+        if (!cache.isDirectory() && !cache.mkdirs()) throw new IllegalStateException("Cannot create " + cache);
+
+        int port = MockUpstream.getPort();
+        proxy = new SmoothProxy("127.0.0.1", port, new Ipc() {
+            @Override
+            public File getCacheDir() {
+                return cache;
+            }
+
+            @Override
+            public String getPattern() {
+                return "HH:mm";
+            }
+
+            @Override
+            public void setNotification(String text) {
+            }
+        });
+        proxy.init("benchmark", "benchmark", "view247", "benchmark", 1);
+        proxy.start(NanoHTTPD.SOCKET_READ_TIMEOUT, true);
+
+        client = new OkHttpClient();
+        origin = "http://127.0.0.1:" + port;
+        for (String line : get(origin + "/playlist.m3u8?ch=01").split("\n")) {
+            if (line.startsWith("/s/")) base = origin + line.substring(0, line.lastIndexOf('/') + 1);
+        }
+        if (base == null) throw new IllegalStateException("Tune failed");
+    }
+
+    @TearDown
+    public void tearDown() {
+        proxy.stop();
+        upstream.stop();
+    }
+
+    @Benchmark
+    public long segmentHit(Reader reader) throws Exception {
+        return drain(reader, base + "l_0.ts?nimblesessionid=1");
+    }
+
+    @Benchmark
+    public long segmentMiss(Reader reader) throws Exception {
+        return drain(reader, base + "l_" + sequence.incrementAndGet() + ".ts?nimblesessionid=1");
+    }
+
+    // More concurrent viewers than the default worker pool, each pulling fresh segments back to back.
+    @Benchmark
+    @Threads(24)
+    public long streams(Reader reader) throws Exception {
+        return drain(reader, base + "l_" + sequence.incrementAndGet() + ".ts?nimblesessionid=1");
+    }
+
+    @Benchmark
+    public long chunks(Reader reader) throws Exception {
+        return drain(reader, base + "chunks.m3u8?nimblesessionid=1");
+    }
+
+    @Benchmark
+    public long playlist(Reader reader) throws Exception {
+        return drain(reader, origin + "/playlist.m3u8");
+    }
+
+    @Benchmark
+    public JsonObject getJson() {
+        return HttpClient.getJson("https://sstv.fog.pt/epg/channels.json");
+    }
+
+    // One read buffer per benchmark thread; a shared one races under @Threads and skews the gc profile.
+    @State(Scope.Thread)
+    public static class Reader {
+        final byte[] buffer = new byte[65536];
+    }
+
+    private String get(String url) throws Exception {
+        Response r = client.newCall(new Request.Builder().url(url).build()).execute();
+        try {
+            return r.body().string();
+        } finally {
+            r.close();
+        }
+    }
+
+    private long drain(Reader reader, String url) throws Exception {
+        Response r = client.newCall(new Request.Builder().url(url).build()).execute();
+        try {
+            if (!r.isSuccessful()) throw new IllegalStateException("HTTP " + r.code() + " " + url);
+            long total = 0;
+            InputStream in = r.body().byteStream();
+            for (int n; (n = in.read(reader.buffer)) != -1; ) total += n;
+            return total;
+        } finally {
+            r.close();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+    MIT License
+
+    Copyright (c) 2017 mr-notorious
+
+    Permission is hereby granted, free of charge, to any person obtaining a copy
+    of this software and associated documentation files (the "Software"), to deal
+    in the Software without restriction, including without limitation the rights
+    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+    copies of the Software, and to permit persons to whom the Software is
+    furnished to do so, subject to the following conditions:
+
+    The above copyright notice and this permission notice shall be included in all
+    copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+    SOFTWARE.
+ */
+
+package com.notorious.smoothproxy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+final class Accounts {
+    private static final long ACTIVE = 30000;
+    private volatile List<Auth> list = Collections.emptyList();
+
+    synchronized void set(Auth primary) {
+        for (Auth a : list) a.close();
+        list = Collections.singletonList(primary);
+    }
+
+    synchronized void clear() {
+        for (Auth a : list) a.close();
+        list = Collections.emptyList();
+    }
+
+    synchronized void add(Auth auth) {
+        List<Auth> l = new ArrayList<>(list);
+        l.add(auth);
+        list = Collections.unmodifiableList(l);
+    }
+
+    int size() {
+        return list.size();
+    }
+
+    Auth get(int i) {
+        return list.get(i);
+    }
+
+    Auth assign(Sessions sessions, String channel) {
+        List<Auth> l = list;
+        if (l.size() <= 1) return l.isEmpty() ? null : l.get(0);
+
+        Auth shared = sessions.find(channel, ACTIVE);
+        if (shared != null && l.contains(shared)) return shared;
+
+        Auth best = null;
+        int load = Integer.MAX_VALUE;
+        for (Auth a : l) {
+            int n = sessions.count(a, ACTIVE);
+            if (n < load) {
+                best = a;
+                load = n;
+            }
+        }
+        return best;
+    }
+}
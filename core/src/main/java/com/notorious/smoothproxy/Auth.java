@@ -0,0 +1,154 @@
+/*
+    MIT License
+
+    Copyright (c) 2017 mr-notorious
+
+    Permission is hereby granted, free of charge, to any person obtaining a copy
+    of this software and associated documentation files (the "Software"), to deal
+    in the Software without restriction, including without limitation the rights
+    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+    copies of the Software, and to permit persons to whom the Software is
+    furnished to do so, subject to the following conditions:
+
+    The above copyright notice and this permission notice shall be included in all
+    copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+    SOFTWARE.
+ */
+
+package com.notorious.smoothproxy;
+
+import com.google.gson.JsonObject;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+final class Auth {
+    private static final long LIFETIME = 14100000;
+    private static final long MARGIN = 900000;
+    private static final long RETRY = 5000;
+    private static final long RETRY_MAX = 300000;
+    private static final ScheduledThreadPoolExecutor EXECUTOR = new ScheduledThreadPoolExecutor(1);
+    private final String username;
+    private final String password;
+    private final String service;
+    private volatile String hash;
+    private volatile long time;
+    private Future<?> pending;
+    private ScheduledFuture<?> next;
+    private long backoff = RETRY;
+    private boolean closed;
+    private volatile Runnable listener;
+
+    Auth(String username, String password, String service) {
+        this.username = username;
+        this.password = password;
+        this.service = service;
+    }
+
+    String getKey() {
+        return service + ":" + username;
+    }
+
+    String getHash() {
+        return hash;
+    }
+
+    long getTime() {
+        return time;
+    }
+
+    void setListener(Runnable listener) {
+        this.listener = listener;
+    }
+
+    synchronized boolean restore(String hash, long time) {
+        long delay = time - MARGIN - System.currentTimeMillis();
+        if (hash == null || delay <= 0 || closed) return false;
+
+        this.time = time;
+        this.hash = hash;
+        if (next != null) next.cancel(false);
+        next = EXECUTOR.schedule(new Runnable() {
+            @Override
+            public void run() {
+                refresh();
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+        return true;
+    }
+
+    String peek() {
+        return hash != null && time > System.currentTimeMillis() ? hash : null;
+    }
+
+    String get() {
+        if (hash != null && time > System.currentTimeMillis()) return hash;
+        try {
+            refresh().get(30, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return hash;
+    }
+
+    synchronized Future<?> refresh() {
+        if (pending == null || pending.isDone()) pending = EXECUTOR.submit(new Runnable() {
+            @Override
+            public void run() {
+                login();
+            }
+        });
+        return pending;
+    }
+
+    synchronized void close() {
+        closed = true;
+        if (next != null) next.cancel(false);
+    }
+
+    private void login() {
+        long start = System.nanoTime();
+        JsonObject jO = HttpClient.getJson((service.contains("mma") ? "https://www.mma-tv.net/loginForm.php" : "https://auth.smoothstreams.tv/hash_api.php")
+                + "?username=" + HttpClient.encode(username) + "&password=" + HttpClient.encode(password) + "&site=" + service);
+
+        String h = null;
+        try {
+            if (jO != null && jO.getAsJsonPrimitive("code").getAsInt() == 1) h = jO.getAsJsonPrimitive("hash").getAsString();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        Metrics.record("auth_refresh", Metrics.getLabel("result", h != null ? "ok" : "error"), start);
+
+        long delay;
+        if (h != null) {
+            time = System.currentTimeMillis() + LIFETIME;
+            hash = h;
+            delay = LIFETIME - MARGIN;
+            backoff = RETRY;
+            Runnable l = listener;
+            if (l != null) l.run();
+        } else {
+            delay = backoff;
+            backoff = Math.min(backoff * 2, RETRY_MAX);
+        }
+
+        synchronized (this) {
+            if (!closed) next = EXECUTOR.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    refresh();
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+}
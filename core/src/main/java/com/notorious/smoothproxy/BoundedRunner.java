@@ -0,0 +1,98 @@
+/*
+    MIT License
+
+    Copyright (c) 2017 mr-notorious
+
+    Permission is hereby granted, free of charge, to any person obtaining a copy
+    of this software and associated documentation files (the "Software"), to deal
+    in the Software without restriction, including without limitation the rights
+    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+    copies of the Software, and to permit persons to whom the Software is
+    furnished to do so, subject to the following conditions:
+
+    The above copyright notice and this permission notice shall be included in all
+    copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+    SOFTWARE.
+ */
+
+package com.notorious.smoothproxy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import fi.iki.elonen.NanoHTTPD;
+
+final class BoundedRunner implements NanoHTTPD.AsyncRunner {
+    private final List<NanoHTTPD.ClientHandler> running = new ArrayList<>();
+    private final AtomicInteger rejected = new AtomicInteger();
+    private final ThreadPoolExecutor executor;
+
+    BoundedRunner(int workers, int backlog) {
+        executor = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(backlog), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "NanoHttpd Worker #" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    int getActive() {
+        return executor.getActiveCount();
+    }
+
+    int getQueued() {
+        return executor.getQueue().size();
+    }
+
+    int getRejected() {
+        return rejected.get();
+    }
+
+    @Override
+    public void closeAll() {
+        List<NanoHTTPD.ClientHandler> handlers;
+        synchronized (running) {
+            handlers = new ArrayList<>(running);
+        }
+        for (NanoHTTPD.ClientHandler h : handlers) h.close();
+    }
+
+    @Override
+    public void closed(NanoHTTPD.ClientHandler h) {
+        synchronized (running) {
+            running.remove(h);
+        }
+    }
+
+    @Override
+    public void exec(NanoHTTPD.ClientHandler h) {
+        synchronized (running) {
+            running.add(h);
+        }
+        try {
+            executor.execute(h);
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            closed(h);
+            h.close();
+        }
+    }
+}
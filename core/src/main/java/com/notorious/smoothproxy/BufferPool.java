@@ -0,0 +1,53 @@
+/*
+    MIT License
+
+    Copyright (c) 2017 mr-notorious
+
+    Permission is hereby granted, free of charge, to any person obtaining a copy
+    of this software and associated documentation files (the "Software"), to deal
+    in the Software without restriction, including without limitation the rights
+    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+    copies of the Software, and to permit persons to whom the Software is
+    furnished to do so, subject to the following conditions:
+
+    The above copyright notice and this permission notice shall be included in all
+    copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+    SOFTWARE.
+ */
+
+package com.notorious.smoothproxy;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+final class BufferPool {
+    static final int CHUNK = 65536;
+    private final ArrayDeque<ByteBuffer> free = new ArrayDeque<>();
+    private int max;
+
+    BufferPool(long budget) {
+        max = (int) (budget / CHUNK);
+    }
+
+    synchronized void setBudget(long budget) {
+        max = (int) (budget / CHUNK);
+        while (free.size() > max) free.pollLast();
+    }
+
+    synchronized ByteBuffer acquire() {
+        ByteBuffer b = free.pollFirst();
+        return b != null ? b : ByteBuffer.allocateDirect(CHUNK);
+    }
+
+    synchronized void release(ByteBuffer b) {
+        b.clear();
+        if (free.size() < max) free.addFirst(b);
+    }
+}
@@ -0,0 +1,222 @@
+/*
+    MIT License
+
+    Copyright (c) 2017 mr-notorious
+
+    Permission is hereby granted, free of charge, to any person obtaining a copy
+    of this software and associated documentation files (the "Software"), to deal
+    in the Software without restriction, including without limitation the rights
+    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+    copies of the Software, and to permit persons to whom the Software is
+    furnished to do so, subject to the following conditions:
+
+    The above copyright notice and this permission notice shall be included in all
+    copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+    SOFTWARE.
+ */
+
+package com.notorious.smoothproxy;
+
+import com.google.gson.JsonObject;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+final class ChannelMap {
+    private static final long REFRESH = 600000;
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor();
+    private final Mirrors mirrors;
+    private final String host;
+    private final int port;
+    private final Object loading = new Object();
+    private volatile Rendered playlist;
+    private volatile long checked;
+    private volatile Set<String> ids = Collections.emptySet();
+    private volatile Set<Integer> numbers = Collections.emptySet();
+    private JsonObject map;
+    private boolean feed;
+    private boolean pending;
+    private volatile Runnable listener;
+
+    ChannelMap(Mirrors mirrors, String host, int port) {
+        this.mirrors = mirrors;
+        this.host = host;
+        this.port = port;
+    }
+
+    Rendered getPlaylist() {
+        Rendered r = playlist;
+        if (r == null) {
+            synchronized (loading) {
+                if (playlist == null) refresh();
+            }
+            r = playlist;
+        }
+        else if (checked + REFRESH < System.currentTimeMillis()) schedule();
+        return r != null ? r : new Rendered("#EXTM3U\n", "application/vnd.apple.mpegurl");
+    }
+
+    void setListener(Runnable listener) {
+        this.listener = listener;
+    }
+
+    synchronized JsonObject getMap() {
+        return map;
+    }
+
+    synchronized boolean isFeed() {
+        return feed;
+    }
+
+    long getChecked() {
+        return checked;
+    }
+
+    synchronized void restore(JsonObject m, boolean f, long time) {
+        if (playlist != null) return;
+        try {
+            playlist = new Rendered(render(m, f), "application/vnd.apple.mpegurl");
+            ids = getIds(m, f);
+            numbers = getNumbers(m, f);
+            map = m;
+            feed = f;
+            checked = time;
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    synchronized int getCount() {
+        return map != null ? map.size() : 0;
+    }
+
+    private synchronized void schedule() {
+        if (pending) return;
+        pending = true;
+        EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    synchronized (loading) {
+                        refresh();
+                    }
+                } finally {
+                    synchronized (ChannelMap.this) {
+                        pending = false;
+                    }
+                }
+            }
+        });
+    }
+
+    private void notifyListener() {
+        Runnable l = listener;
+        if (l != null) l.run();
+    }
+
+    private void refresh() {
+        boolean f = false;
+        JsonObject m = null;
+        for (int i : mirrors.rank()) {
+            long start = System.currentTimeMillis();
+            m = HttpClient.getJson(mirrors.get(i) + "/channels.json");
+            mirrors.report(i, System.currentTimeMillis() - start, m != null);
+            if (m != null) break;
+        }
+        if (m == null) {
+            m = HttpClient.getJson("https://guide.smoothstreams.tv/feed.json");
+            f = true;
+        }
+        if (m == null) return;
+
+        synchronized (this) {
+            checked = System.currentTimeMillis();
+            if (playlist != null && f == feed && m.equals(map)) return;
+            try {
+                playlist = new Rendered(render(m, f), "application/vnd.apple.mpegurl");
+                ids = getIds(m, f);
+                numbers = getNumbers(m, f);
+                map = m;
+                feed = f;
+            } catch (Exception e) {
+                e.printStackTrace();
+                return;
+            }
+        }
+        notifyListener();
+    }
+
+    Set<String> getIds() {
+        getPlaylist();
+        return ids;
+    }
+
+    private static Set<String> getIds(JsonObject map, boolean feed) {
+        Set<String> ids = new HashSet<>();
+        for (String key : map.keySet()) {
+            JsonObject jO = map.getAsJsonObject(key);
+            ids.add(feed ? jO.getAsJsonPrimitive("channel_id").getAsString() : jO.getAsJsonPrimitive("xmltvid").getAsString());
+        }
+        return Collections.unmodifiableSet(ids);
+    }
+
+    String getChannel(String channel) {
+        if (channel == null || !channel.matches("\\d{1,3}")) return null;
+        int num = Integer.parseInt(channel);
+        getPlaylist();
+        if (!numbers.contains(num)) return null;
+        return num < 10 ? "0" + num : String.valueOf(num);
+    }
+
+    private static Set<Integer> getNumbers(JsonObject map, boolean feed) {
+        Set<Integer> numbers = new HashSet<>();
+        for (String key : map.keySet()) {
+            JsonObject jO = map.getAsJsonObject(key);
+            numbers.add(jO.getAsJsonPrimitive(feed ? "channel_id" : "channum").getAsInt());
+        }
+        return Collections.unmodifiableSet(numbers);
+    }
+
+    String render(JsonObject map, boolean feed) {
+        StringBuilder out = new StringBuilder("#EXTM3U\n");
+        if (!feed) for (String key : map.keySet()) {
+            JsonObject jO = map.getAsJsonObject(key);
+
+            int group = jO.getAsJsonPrimitive("247").getAsInt();
+            int num = jO.getAsJsonPrimitive("channum").getAsInt();
+            String id = jO.getAsJsonPrimitive("xmltvid").getAsString();
+            String name = HttpClient.decode(jO.getAsJsonPrimitive("channame").getAsString());
+
+            append(out, group == 1 ? "24/7 channels" : "Empty channels", id, num, name);
+        }
+        else for (String key : map.keySet()) {
+            JsonObject jO = map.getAsJsonObject(key);
+
+            int num = jO.getAsJsonPrimitive("channel_id").getAsInt();
+            String name = HttpClient.decode(jO.getAsJsonPrimitive("name").getAsString().substring(5).trim());
+
+            append(out, num < 61 ? "24/7 channels" : "Empty channels", String.valueOf(num), num, !name.isEmpty() ? name : "Channel " + num);
+        }
+        return out.toString();
+    }
+
+    private void append(StringBuilder out, String group, String id, int num, String name) {
+        out.append("#EXTINF:-1 group-title=\"").append(group)
+                .append("\" tvg-id=\"").append(id)
+                .append("\" tvg-logo=\"https://guide.smoothstreams.tv/assets/images/channels/").append(num)
+                .append(".png\",").append(name)
+                .append(".\nhttp://").append(host).append(':').append(port).append("/playlist.m3u8?ch=");
+        if (num >= 0 && num < 10) out.append('0');
+        out.append(num).append('\n');
+    }
+}
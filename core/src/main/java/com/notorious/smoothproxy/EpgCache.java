@@ -0,0 +1,179 @@
+/*
+    MIT License
+
+    Copyright (c) 2017 mr-notorious
+
+    Permission is hereby granted, free of charge, to any person obtaining a copy
+    of this software and associated documentation files (the "Software"), to deal
+    in the Software without restriction, including without limitation the rights
+    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+    copies of the Software, and to permit persons to whom the Software is
+    furnished to do so, subject to the following conditions:
+
+    The above copyright notice and this permission notice shall be included in all
+    copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+    SOFTWARE.
+ */
+
+package com.notorious.smoothproxy;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+final class EpgCache {
+    private static final long FRESH = 900000;
+    private static final long RETRY = 60000;
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor();
+    private final File file;
+    private final File meta;
+    private final Mirrors mirrors;
+    private final String name;
+    private final Properties properties = new Properties();
+    private final Object loading = new Object();
+    private long next;
+    private long backoff = RETRY;
+    private boolean pending;
+
+    EpgCache(File dir, String name, Mirrors mirrors) {
+        this.name = name;
+        this.mirrors = mirrors;
+        file = new File(dir, name);
+        meta = new File(dir, name + ".properties");
+        load();
+    }
+
+    // A cached guide is served as is and revalidated in the background; failed attempts back off.
+    File get() {
+        synchronized (this) {
+            if (file.exists()) {
+                if (next < System.currentTimeMillis()) schedule();
+                return file;
+            }
+        }
+        synchronized (loading) {
+            if (!file.exists() && isDue()) revalidate();
+        }
+        return file.exists() ? file : null;
+    }
+
+    synchronized String getType() {
+        return properties.getProperty("type", "application/octet-stream");
+    }
+
+    private synchronized boolean isDue() {
+        return next < System.currentTimeMillis();
+    }
+
+    private synchronized void schedule() {
+        if (pending) return;
+        pending = true;
+        EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    synchronized (loading) {
+                        if (isDue()) revalidate();
+                    }
+                } finally {
+                    synchronized (EpgCache.this) {
+                        pending = false;
+                    }
+                }
+            }
+        });
+    }
+
+    private synchronized void setResult(boolean ok) {
+        long now = System.currentTimeMillis();
+        next = now + (ok ? FRESH : backoff);
+        backoff = ok ? RETRY : Math.min(backoff * 2, FRESH);
+    }
+
+    private void revalidate() {
+        boolean cached = file.exists();
+        for (int i : mirrors.rank()) {
+            long start = System.currentTimeMillis();
+            HttpClient.Content c = HttpClient.getContent(mirrors.get(i) + "/" + name, "Accept-Encoding", "identity",
+                    "If-None-Match", cached ? properties.getProperty("etag") : null,
+                    "If-Modified-Since", cached ? properties.getProperty("modified") : null);
+            long ttfb = System.currentTimeMillis() - start;
+            if (c == null) {
+                mirrors.report(i, 0, false);
+                continue;
+            }
+
+            try {
+                if (c.code != 304) {
+                    File tmp = new File(file.getPath() + ".tmp");
+                    FileOutputStream out = new FileOutputStream(tmp);
+                    try {
+                        FileChannel ch = out.getChannel();
+                        ch.transferFrom(Channels.newChannel(c.response), 0, Long.MAX_VALUE);
+                        ch.force(false);
+                    } finally {
+                        out.close();
+                    }
+                    if (!tmp.renameTo(file)) throw new IOException("Rename failed: " + tmp);
+
+                    synchronized (this) {
+                        properties.clear();
+                        properties.setProperty("type", c.type);
+                        if (c.headers.get("ETag") != null) properties.setProperty("etag", c.headers.get("ETag"));
+                        if (c.headers.get("Last-Modified") != null) properties.setProperty("modified", c.headers.get("Last-Modified"));
+                        save();
+                    }
+                }
+                mirrors.report(i, ttfb, true);
+                setResult(true);
+                return;
+            } catch (Exception e) {
+                e.printStackTrace();
+                mirrors.report(i, 0, false);
+            } finally {
+                c.close();
+            }
+        }
+        setResult(false);
+    }
+
+    private void load() {
+        if (!meta.exists()) return;
+        try {
+            FileInputStream in = new FileInputStream(meta);
+            try {
+                properties.load(in);
+            } finally {
+                in.close();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void save() {
+        try {
+            FileOutputStream out = new FileOutputStream(meta);
+            try {
+                properties.store(out, null);
+            } finally {
+                out.close();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
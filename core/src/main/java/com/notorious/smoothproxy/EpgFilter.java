@@ -0,0 +1,177 @@
+/*
+    MIT License
+
+    Copyright (c) 2017 mr-notorious
+
+    Permission is hereby granted, free of charge, to any person obtaining a copy
+    of this software and associated documentation files (the "Software"), to deal
+    in the Software without restriction, including without limitation the rights
+    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+    copies of the Software, and to permit persons to whom the Software is
+    furnished to do so, subject to the following conditions:
+
+    The above copyright notice and this permission notice shall be included in all
+    copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+    SOFTWARE.
+ */
+
+package com.notorious.smoothproxy;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+import org.xmlpull.v1.XmlSerializer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Calendar;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+final class EpgFilter {
+    private static final long HOUR = 3600000;
+    private static final ThreadLocal<Calendar> UTC_CAL = new ThreadLocal<Calendar>() {
+        @Override
+        protected Calendar initialValue() {
+            return Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        }
+    };
+    private final File file;
+    private String version;
+
+    EpgFilter(File dir, String name) {
+        file = new File(dir, name);
+    }
+
+    synchronized File get(File source, Set<String> ids, int hours) {
+        long start = System.currentTimeMillis() / HOUR * HOUR;
+        String v = source.lastModified() + ":" + source.length() + ":" + ids.hashCode() + ":" + start + ":" + hours;
+        if (v.equals(version) && file.exists()) return file;
+
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            InputStream in = new GZIPInputStream(new BufferedInputStream(new FileInputStream(source), 65536));
+            try {
+                OutputStream out = new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 65536));
+                try {
+                    filter(in, out, ids, start, start + hours * HOUR);
+                } finally {
+                    out.close();
+                }
+            } finally {
+                in.close();
+            }
+            if (!tmp.renameTo(file)) throw new IOException("Rename failed: " + tmp);
+            version = v;
+        } catch (Exception e) {
+            e.printStackTrace();
+            if (!tmp.delete() && tmp.exists()) tmp.deleteOnExit();
+            return null;
+        }
+        return file;
+    }
+
+    static void filter(InputStream in, OutputStream out, Set<String> ids, long start, long end) throws XmlPullParserException, IOException {
+        XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
+        XmlPullParser parser = factory.newPullParser();
+        parser.setInput(in, null);
+        XmlSerializer serializer = factory.newSerializer();
+        serializer.setOutput(out, "UTF-8");
+        serializer.startDocument("UTF-8", null);
+
+        for (int type = parser.getEventType(); type != XmlPullParser.END_DOCUMENT; type = parser.next()) {
+            if (type == XmlPullParser.START_TAG && parser.getDepth() == 1) {
+                serializer.text("\n");
+                copyStart(parser, serializer);
+                serializer.text("\n");
+            } else if (type == XmlPullParser.END_TAG && parser.getDepth() == 1) {
+                serializer.endTag(null, parser.getName());
+            } else if (type == XmlPullParser.START_TAG && parser.getDepth() == 2) {
+                if (isKept(parser, ids, start, end)) {
+                    copy(parser, serializer);
+                    serializer.text("\n");
+                } else {
+                    skip(parser);
+                }
+            }
+        }
+        serializer.endDocument();
+    }
+
+    private static boolean isKept(XmlPullParser parser, Set<String> ids, long start, long end) {
+        String name = parser.getName();
+        if (name.equals("channel")) return ids.contains(parser.getAttributeValue(null, "id"));
+        if (!name.equals("programme") || !ids.contains(parser.getAttributeValue(null, "channel"))) return false;
+
+        long from = getTime(parser.getAttributeValue(null, "start"));
+        long to = getTime(parser.getAttributeValue(null, "stop"));
+        return (to == Long.MIN_VALUE || to > start) && (from == Long.MIN_VALUE || from < end);
+    }
+
+    private static void copy(XmlPullParser parser, XmlSerializer serializer) throws XmlPullParserException, IOException {
+        int depth = parser.getDepth();
+        copyStart(parser, serializer);
+        for (int type; (type = parser.next()) != XmlPullParser.END_TAG || parser.getDepth() > depth; ) {
+            if (type == XmlPullParser.START_TAG) copyStart(parser, serializer);
+            else if (type == XmlPullParser.END_TAG) serializer.endTag(null, parser.getName());
+            else if (type == XmlPullParser.TEXT) serializer.text(parser.getText());
+        }
+        serializer.endTag(null, parser.getName());
+    }
+
+    private static void copyStart(XmlPullParser parser, XmlSerializer serializer) throws IOException {
+        serializer.startTag(null, parser.getName());
+        for (int i = 0; i < parser.getAttributeCount(); i++)
+            serializer.attribute(null, parser.getAttributeName(i), parser.getAttributeValue(i));
+    }
+
+    private static void skip(XmlPullParser parser) throws XmlPullParserException, IOException {
+        int depth = parser.getDepth();
+        while (parser.next() != XmlPullParser.END_TAG || parser.getDepth() > depth) {
+        }
+    }
+
+    static long getTime(String text) {
+        if (text == null || text.length() < 14) return Long.MIN_VALUE;
+        try {
+            Calendar c = UTC_CAL.get();
+            c.clear();
+            c.set(getInt(text, 0, 4), getInt(text, 4, 6) - 1, getInt(text, 6, 8), getInt(text, 8, 10), getInt(text, 10, 12), getInt(text, 12, 14));
+            long time = c.getTimeInMillis();
+
+            int i = text.indexOf(' ', 14);
+            if (i != -1 && text.length() >= i + 6) {
+                int offset = getInt(text, i + 2, i + 4) * 60 + getInt(text, i + 4, i + 6);
+                time -= (text.charAt(i + 1) == '-' ? -offset : offset) * 60000L;
+            }
+            return time;
+        } catch (NumberFormatException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private static int getInt(String text, int from, int to) {
+        int n = 0;
+        for (int i = from; i < to; i++) {
+            int d = text.charAt(i) - '0';
+            if (d < 0 || d > 9) throw new NumberFormatException(text);
+            n = n * 10 + d;
+        }
+        return n;
+    }
+}
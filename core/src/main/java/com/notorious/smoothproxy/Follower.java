@@ -0,0 +1,130 @@
+/*
+    MIT License
+
+    Copyright (c) 2017 mr-notorious
+
+    Permission is hereby granted, free of charge, to any person obtaining a copy
+    of this software and associated documentation files (the "Software"), to deal
+    in the Software without restriction, including without limitation the rights
+    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+    copies of the Software, and to permit persons to whom the Software is
+    furnished to do so, subject to the following conditions:
+
+    The above copyright notice and this permission notice shall be included in all
+    copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+    SOFTWARE.
+ */
+
+package com.notorious.smoothproxy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+abstract class Follower implements Runnable {
+    private static final ScheduledThreadPoolExecutor EXECUTOR = new ScheduledThreadPoolExecutor(2);
+    final String channel;
+    private final Source source;
+    private final int start;
+    private volatile boolean stopped;
+    private String chunks;
+    private long last = -1;
+
+    interface Source {
+        String getChunks(String channel);
+    }
+
+    Follower(String channel, Source source, int start) {
+        this.channel = channel;
+        this.source = source;
+        this.start = start;
+    }
+
+    void start(long delay) {
+        EXECUTOR.schedule(this, Math.max(0, delay), TimeUnit.MILLISECONDS);
+    }
+
+    void stop() {
+        stopped = true;
+    }
+
+    boolean isStopped() {
+        return stopped;
+    }
+
+    abstract boolean isFinished();
+
+    abstract void accept(List<Chunk> chunks);
+
+    abstract void finish();
+
+    @Override
+    public final void run() {
+        if (!stopped && isFinished()) stopped = true;
+        if (stopped) {
+            finish();
+            return;
+        }
+
+        double target = 2;
+        try {
+            target = poll();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        EXECUTOR.schedule(this, (long) (target * 500), TimeUnit.MILLISECONDS);
+    }
+
+    private double poll() {
+        if (chunks == null) chunks = source.getChunks(channel);
+        String text = chunks != null ? HttpClient.getText(chunks) : null;
+        if (text == null) {
+            chunks = null;
+            return 2;
+        }
+
+        MediaPlaylist p = MediaPlaylist.parse(text);
+        List<MediaPlaylist.Entry> entries = p.entries;
+        long newest = p.sequence + entries.size() - 1;
+        boolean gap = false;
+        if (last == -1 || newest < last) {
+            gap = last != -1;
+            last = newest - Math.min(start, entries.size());
+        }
+
+        int q = chunks.indexOf('?');
+        String base = chunks.substring(0, chunks.lastIndexOf('/', q != -1 ? q : chunks.length()) + 1);
+        List<Chunk> out = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i++) {
+            long seq = p.sequence + i;
+            if (seq <= last) continue;
+
+            MediaPlaylist.Entry e = entries.get(i);
+            out.add(new Chunk(e.uri.contains("://") ? e.uri : base + e.uri, e.duration, gap || seq != last + 1));
+            gap = false;
+            last = seq;
+        }
+        if (!out.isEmpty()) accept(out);
+        return p.target;
+    }
+
+    static final class Chunk {
+        final String url;
+        final double duration;
+        final boolean gap;
+
+        Chunk(String url, double duration, boolean gap) {
+            this.url = url;
+            this.duration = duration;
+            this.gap = gap;
+        }
+    }
+}
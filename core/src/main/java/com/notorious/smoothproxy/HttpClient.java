@@ -0,0 +1,201 @@
+/*
+    MIT License
+
+    Copyright (c) 2017 mr-notorious
+
+    Permission is hereby granted, free of charge, to any person obtaining a copy
+    of this software and associated documentation files (the "Software"), to deal
+    in the Software without restriction, including without limitation the rights
+    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+    copies of the Software, and to permit persons to whom the Software is
+    furnished to do so, subject to the following conditions:
+
+    The above copyright notice and this permission notice shall be included in all
+    copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+    SOFTWARE.
+ */
+
+package com.notorious.smoothproxy;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+
+import org.jsoup.parser.Parser;
+
+import java.io.Closeable;
+import java.io.InputStream;
+import java.net.URLEncoder;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Headers;
+import okhttp3.ConnectionPool;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.Response;
+
+final class HttpClient {
+    private static volatile OkHttpClient client = new OkHttpClient.Builder()
+            .connectTimeout(30, TimeUnit.SECONDS)
+            .writeTimeout(30, TimeUnit.SECONDS)
+            .readTimeout(30, TimeUnit.SECONDS)
+            .connectionPool(new ConnectionPool(8, 5, TimeUnit.MINUTES))
+            .build();
+
+    static OkHttpClient getClient() {
+        return client;
+    }
+
+    static void setClient(OkHttpClient client) {
+        HttpClient.client = client;
+    }
+
+    static String decode(String text) {
+        return Parser.unescapeEntities(text, false);
+    }
+
+    static String encode(String text) {
+        try {
+            return URLEncoder.encode(text, "UTF-8");
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    static Call newCall(String url, String... headers) {
+        Request.Builder rB = new Request.Builder().url(url);
+        for (int i = 0; i + 1 < headers.length; i += 2) {
+            if (headers[i + 1] != null) rB.header(headers[i], headers[i + 1]);
+        }
+        return client.newCall(rB.build());
+    }
+
+    static Content getContent(String url, String... headers) {
+        try {
+            return getContent(newCall(url, headers));
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    static Content getContent(Call call) {
+        try {
+            return new Content(call, getResponse(call));
+        } catch (Exception e) {
+            if (!call.isCanceled()) e.printStackTrace();
+            return null;
+        }
+    }
+
+    static String getText(String url) {
+        Response r = null;
+        try {
+            r = getResponse(new Request.Builder().url(url).build());
+            return r.body().string();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            if (r != null) r.close();
+        }
+    }
+
+    static JsonObject getJson(String url) {
+        Response r = null;
+        try {
+            r = getResponse(new Request.Builder().url(url).build());
+            return new Gson().fromJson(r.body().charStream(), JsonObject.class);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            if (r != null) r.close();
+        }
+    }
+
+    static <T> T getJson(String url, JsonHandler<T> handler) {
+        Response r = null;
+        try {
+            r = getResponse(new Request.Builder().url(url).build());
+            return handler.read(new JsonReader(r.body().charStream()));
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            if (r != null) r.close();
+        }
+    }
+
+    private static Response getResponse(Request request) throws Exception {
+        return getResponse(client.newCall(request));
+    }
+
+    private static Response getResponse(Call call) throws Exception {
+        Request request = call.request();
+        String host = Metrics.getLabel("host", request.url().host());
+        long start = System.nanoTime();
+        Response r;
+        try {
+            r = call.execute();
+        } catch (Exception e) {
+            if (!call.isCanceled()) Metrics.increment("upstream_errors", host);
+            throw e;
+        }
+        Metrics.record("upstream_ttfb", host, start);
+        if (!r.isSuccessful() && r.code() != 304) {
+            r.close();
+            Metrics.increment("upstream_errors", host);
+            throw new Exception("HTTP " + r.code() + " " + request.url());
+        }
+        return r;
+    }
+
+    interface JsonHandler<T> {
+        T read(JsonReader reader) throws Exception;
+    }
+
+    static final class Content implements Closeable {
+        final Call call;
+        final InputStream response;
+        final long length;
+        final String type;
+        final String encoding;
+        final int code;
+        final Headers headers;
+
+        Content(Call call, Response r) {
+            this.call = call;
+            MediaType mT = r.body().contentType();
+            response = new Transfer(r);
+            length = r.body().contentLength();
+            type = mT != null ? mT.toString() : "application/octet-stream";
+            encoding = r.header("Content-Encoding");
+            code = r.code();
+            headers = r.headers();
+        }
+
+        void cancel() {
+            call.cancel();
+        }
+
+        @Override
+        public void close() {
+            try {
+                response.close();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
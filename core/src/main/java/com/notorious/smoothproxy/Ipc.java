@@ -24,7 +24,11 @@
 
 package com.notorious.smoothproxy;
 
-interface Ipc {
+import java.io.File;
+
+public interface Ipc {
+    File getCacheDir();
+
     String getPattern();
 
     void setNotification(String text);
@@ -0,0 +1,72 @@
+/*
+    MIT License
+
+    Copyright (c) 2017 mr-notorious
+
+    Permission is hereby granted, free of charge, to any person obtaining a copy
+    of this software and associated documentation files (the "Software"), to deal
+    in the Software without restriction, including without limitation the rights
+    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+    copies of the Software, and to permit persons to whom the Software is
+    furnished to do so, subject to the following conditions:
+
+    The above copyright notice and this permission notice shall be included in all
+    copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+    SOFTWARE.
+ */
+
+package com.notorious.smoothproxy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+final class MediaPlaylist {
+    final List<Entry> entries = new ArrayList<>();
+    double target = 10;
+    long sequence;
+
+    static MediaPlaylist parse(String text) {
+        MediaPlaylist p = new MediaPlaylist();
+        double duration = 0;
+        for (String line : text.split("\\r?\\n")) {
+            line = line.trim();
+            if (line.isEmpty()) continue;
+            try {
+                if (line.startsWith("#EXT-X-TARGETDURATION:")) p.target = Double.parseDouble(line.substring(22));
+                else if (line.startsWith("#EXT-X-MEDIA-SEQUENCE:")) p.sequence = Long.parseLong(line.substring(22));
+                else if (line.startsWith("#EXTINF:")) duration = Double.parseDouble(line.substring(8, line.indexOf(',') != -1 ? line.indexOf(',') : line.length()));
+                else if (!line.startsWith("#")) {
+                    p.entries.add(new Entry(line, duration > 0 ? duration : p.target));
+                    duration = 0;
+                }
+            } catch (NumberFormatException e) {
+                e.printStackTrace();
+            }
+        }
+        return p;
+    }
+
+    double getDuration() {
+        if (entries.isEmpty()) return target;
+        double total = 0;
+        for (Entry e : entries) total += e.duration;
+        return total / entries.size();
+    }
+
+    static final class Entry {
+        final String uri;
+        final double duration;
+
+        Entry(String uri, double duration) {
+            this.uri = uri;
+            this.duration = duration;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+    MIT License
+
+    Copyright (c) 2017 mr-notorious
+
+    Permission is hereby granted, free of charge, to any person obtaining a copy
+    of this software and associated documentation files (the "Software"), to deal
+    in the Software without restriction, including without limitation the rights
+    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+    copies of the Software, and to permit persons to whom the Software is
+    furnished to do so, subject to the following conditions:
+
+    The above copyright notice and this permission notice shall be included in all
+    copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+    SOFTWARE.
+ */
+
+package com.notorious.smoothproxy;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+final class Metrics {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final ConcurrentHashMap<String, Histogram> HISTOGRAMS = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, AtomicLong> COUNTERS = new ConcurrentHashMap<>();
+
+    static String getLabel(String key, String value) {
+        return key + "=\"" + value.replace("\\", "\\\\").replace("\"", "\\\"").toLowerCase(Locale.US) + "\"";
+    }
+
+    private static String getSeries(String name, String labels) {
+        return labels.isEmpty() ? name : name + "{" + labels + "}";
+    }
+
+    static Histogram getHistogram(String name, String labels) {
+        String key = getSeries(name, labels);
+        Histogram h = HISTOGRAMS.get(key);
+        if (h == null) {
+            Histogram n = new Histogram(name, labels);
+            h = HISTOGRAMS.putIfAbsent(key, n);
+            if (h == null) h = n;
+        }
+        return h;
+    }
+
+    static void record(String name, String labels, long start) {
+        getHistogram(name, labels).record((System.nanoTime() - start) / 1000);
+    }
+
+    static void increment(String name, String labels) {
+        String key = getSeries(name, labels);
+        AtomicLong c = COUNTERS.get(key);
+        if (c == null) {
+            AtomicLong n = new AtomicLong();
+            c = COUNTERS.putIfAbsent(key, n);
+            if (c == null) c = n;
+        }
+        c.incrementAndGet();
+    }
+
+    static void render(StringBuilder out) {
+        for (Map.Entry<String, AtomicLong> e : new TreeMap<>(COUNTERS).entrySet()) {
+            out.append(e.getKey()).append(' ').append(e.getValue().get()).append('\n');
+        }
+        for (Histogram h : new TreeMap<>(HISTOGRAMS).values()) h.render(out);
+    }
+
+    static void gauge(StringBuilder out, String name, long value) {
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    static final class Histogram {
+        private static final int SUB = 3;
+        private static final int BUCKETS = (64 - SUB) << SUB;
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final String name;
+        private final String labels;
+
+        Histogram(String name, String labels) {
+            this.name = name;
+            this.labels = labels;
+        }
+
+        void record(long micros) {
+            if (micros < 0) micros = 0;
+            counts.incrementAndGet(getIndex(micros));
+            count.incrementAndGet();
+            sum.addAndGet(micros);
+        }
+
+        long getCount() {
+            return count.get();
+        }
+
+        long getPercentile(double q) {
+            long total = count.get();
+            long rank = (long) Math.ceil(q * total);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts.get(i);
+                if (seen >= rank && seen > 0) return getUpper(i);
+            }
+            return 0;
+        }
+
+        void render(StringBuilder out) {
+            String sep = labels.isEmpty() ? "" : ",";
+            for (double q : QUANTILES) {
+                out.append(name).append("_us{").append(labels).append(sep).append("quantile=\"").append(q).append("\"} ")
+                        .append(getPercentile(q)).append('\n');
+            }
+            out.append(getSeries(name + "_us_count", labels)).append(' ').append(count.get()).append('\n');
+            out.append(getSeries(name + "_us_sum", labels)).append(' ').append(sum.get()).append('\n');
+        }
+
+        private static int getIndex(long v) {
+            if (v < (1 << SUB)) return (int) v;
+            int exp = 63 - Long.numberOfLeadingZeros(v);
+            return ((exp - SUB + 1) << SUB) + (int) ((v >>> (exp - SUB)) & ((1 << SUB) - 1));
+        }
+
+        private static long getUpper(int i) {
+            if (i < (1 << SUB)) return i;
+            int exp = (i >>> SUB) + SUB - 1;
+            long sub = i & ((1 << SUB) - 1);
+            return ((1L << SUB | sub) + 1 << (exp - SUB)) - 1;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+    MIT License
+
+    Copyright (c) 2017 mr-notorious
+
+    Permission is hereby granted, free of charge, to any person obtaining a copy
+    of this software and associated documentation files (the "Software"), to deal
+    in the Software without restriction, including without limitation the rights
+    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+    copies of the Software, and to permit persons to whom the Software is
+    furnished to do so, subject to the following conditions:
+
+    The above copyright notice and this permission notice shall be included in all
+    copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+    SOFTWARE.
+ */
+
+package com.notorious.smoothproxy;
+
+final class Mirrors {
+    private static final double ALPHA = 0.3;
+    private static final double PENALTY = 10000;
+    private static final int PROBE = 10;
+    private final String[] urls;
+    private final double[] latency;
+    private final double[] errors;
+    private int picks;
+
+    Mirrors(String... urls) {
+        this.urls = urls;
+        latency = new double[urls.length];
+        errors = new double[urls.length];
+    }
+
+    String get(int i) {
+        return urls[i];
+    }
+
+    synchronized int[] rank() {
+        int[] order = new int[urls.length];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        for (int i = 1; i < order.length; i++) {
+            for (int j = i; j > 0 && getScore(order[j]) < getScore(order[j - 1]); j--) {
+                int t = order[j];
+                order[j] = order[j - 1];
+                order[j - 1] = t;
+            }
+        }
+
+        if (++picks % PROBE == 0 && order.length > 1) {
+            int k = 1 + picks / PROBE % (order.length - 1);
+            int t = order[0];
+            order[0] = order[k];
+            order[k] = t;
+        }
+        return order;
+    }
+
+    synchronized void report(int i, long millis, boolean ok) {
+        errors[i] = errors[i] * (1 - ALPHA) + (ok ? 0 : ALPHA);
+        if (ok) latency[i] = latency[i] == 0 ? millis : latency[i] * (1 - ALPHA) + millis * ALPHA;
+    }
+
+    private double getScore(int i) {
+        return latency[i] + errors[i] * PENALTY;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+    MIT License
+
+    Copyright (c) 2017 mr-notorious
+
+    Permission is hereby granted, free of charge, to any person obtaining a copy
+    of this software and associated documentation files (the "Software"), to deal
+    in the Software without restriction, including without limitation the rights
+    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+    copies of the Software, and to permit persons to whom the Software is
+    furnished to do so, subject to the following conditions:
+
+    The above copyright notice and this permission notice shall be included in all
+    copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+    SOFTWARE.
+ */
+
+package com.notorious.smoothproxy;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+final class Prefetcher {
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(2, 2, 30, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<Runnable>(8), new ThreadPoolExecutor.DiscardOldestPolicy());
+    private final SegmentFetcher fetcher;
+    private volatile int count;
+
+    Prefetcher(SegmentFetcher fetcher, int count) {
+        this.fetcher = fetcher;
+        this.count = count;
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    void setCount(int count) {
+        this.count = count;
+        if (count <= 0) clear();
+    }
+
+    void submit(final Sessions.Session s, String base, MediaPlaylist p) {
+        int count = this.count;
+        if (count <= 0) return;
+        final long idle = (long) (p.target * 2000);
+
+        List<MediaPlaylist.Entry> entries = p.entries;
+        for (MediaPlaylist.Entry e : entries.subList(Math.max(0, entries.size() - count), entries.size())) {
+            if (e.uri.contains("://")) continue;
+            final String url = base + e.uri;
+            final long deadline = SegmentFetcher.getDeadline(e.duration);
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (s.isActive(idle)) fetcher.prefetch(url, deadline);
+                }
+            });
+        }
+    }
+
+    void clear() {
+        executor.getQueue().clear();
+    }
+}
@@ -0,0 +1,427 @@
+/*
+    MIT License
+
+    Copyright (c) 2017 mr-notorious
+
+    Permission is hereby granted, free of charge, to any person obtaining a copy
+    of this software and associated documentation files (the "Software"), to deal
+    in the Software without restriction, including without limitation the rights
+    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+    copies of the Software, and to permit persons to whom the Software is
+    furnished to do so, subject to the following conditions:
+
+    The above copyright notice and this permission notice shall be included in all
+    copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+    SOFTWARE.
+ */
+
+package com.notorious.smoothproxy;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+final class Recorder {
+    private static final long PAD = 300000;
+    private static final long LENGTH = 10800000;
+    private static final long CHECK = 60000;
+    private static final long RETRY = 1000;
+    private static final int RETRIES = 3;
+    private static final int DOWNLOADS = 2;
+    private static final long QUOTA = 4096L * 1024 * 1024;
+    private static final long AGE = 7 * 86400000L;
+    private static final ScheduledThreadPoolExecutor EXECUTOR = new ScheduledThreadPoolExecutor(1);
+    private final ThreadPoolExecutor downloads = new ThreadPoolExecutor(DOWNLOADS, DOWNLOADS, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+    private final ConcurrentHashMap<String, Recording> recordings = new ConcurrentHashMap<>();
+    private final Set<String> deleted = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final File dir;
+    private final SegmentFetcher fetcher;
+    private final Follower.Source source;
+    private final Sports sports;
+    private volatile Pattern rule;
+    private volatile long quota = QUOTA;
+    private volatile long age = AGE;
+    private ScheduledFuture<?> check;
+
+    Recorder(File dir, SegmentFetcher fetcher, Follower.Source source, Sports sports) {
+        this.dir = dir;
+        this.fetcher = fetcher;
+        this.source = source;
+        this.sports = sports;
+        downloads.allowCoreThreadTimeOut(true);
+        load();
+    }
+
+    synchronized void setRule(String regex) {
+        rule = regex != null && !regex.isEmpty() ? Pattern.compile(regex, Pattern.CASE_INSENSITIVE) : null;
+        if (check != null) check.cancel(false);
+        check = rule == null ? null : EXECUTOR.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    match();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }, 0, CHECK, TimeUnit.MILLISECONDS);
+    }
+
+    synchronized void stop() {
+        if (check != null) check.cancel(false);
+        check = null;
+        for (Recording r : recordings.values()) r.stop();
+    }
+
+    void setRetention(int megabytes, int days) {
+        quota = megabytes > 0 ? megabytes * 1024L * 1024 : Long.MAX_VALUE;
+        age = days > 0 ? days * 86400000L : Long.MAX_VALUE;
+        prune();
+    }
+
+    Recording schedule(int num, String name, long start, long end) {
+        String id = getId(num, start);
+        deleted.remove(id);
+        Recording r = recordings.get(id);
+        if (r != null) return r;
+
+        r = new Recording(id, num, name, start, end);
+        if (recordings.putIfAbsent(id, r) != null) return recordings.get(id);
+        r.save();
+        r.start(start - System.currentTimeMillis());
+        return r;
+    }
+
+    Recording get(String id) {
+        return recordings.get(id);
+    }
+
+    boolean delete(String id) {
+        Recording r = recordings.remove(id);
+        if (r == null) return false;
+        deleted.add(id);
+        r.delete();
+        return true;
+    }
+
+    String render(String host, int port) {
+        prune();
+        StringBuilder out = new StringBuilder("#EXTM3U\n");
+        for (Recording r : getSorted()) {
+            out.append("#EXTINF:-1 group-title=\"Recordings\" tvg-id=\"").append(r.num).append("\",")
+                    .append(r.name.replace(",", "")).append("\nhttp://").append(host).append(':').append(port)
+                    .append("/recording/").append(r.id).append(".m3u8\n");
+        }
+        return out.toString();
+    }
+
+    private static String getId(int num, long start) {
+        return String.format(Locale.US, "%d-%02d", start / 60000, num);
+    }
+
+    private List<Recording> getSorted() {
+        List<Recording> list = new ArrayList<>(recordings.values());
+        Collections.sort(list, new Comparator<Recording>() {
+            @Override
+            public int compare(Recording a, Recording b) {
+                return a.start < b.start ? -1 : a.start > b.start ? 1 : a.id.compareTo(b.id);
+            }
+        });
+        return list;
+    }
+
+    // Drops finished recordings past the age limit, then the oldest finished ones until the total fits the quota.
+    private synchronized long prune() {
+        long now = System.currentTimeMillis();
+        List<Recording> list = getSorted();
+        long total = 0;
+        for (Recording r : list) total += r.getBytes();
+        for (Recording r : list) {
+            if (r.end >= now && !r.isStopped()) continue;
+            if (now - r.end > age || total > quota) {
+                total -= r.getBytes();
+                delete(r.id);
+            }
+        }
+        return total;
+    }
+
+    private void match() {
+        Pattern p = rule;
+        if (p == null) return;
+
+        long now = System.currentTimeMillis();
+        for (Sports.Event e : sports.getEvents()) {
+            long end = e.time + (e.runtime > 0 ? e.runtime * 60000L : LENGTH) + PAD;
+            if (end > now && !deleted.contains(getId(e.num, e.time - PAD)) && (p.matcher(e.name).find() || p.matcher(e.group).find()))
+                schedule(e.num, e.name, e.time - PAD, end);
+        }
+    }
+
+    private void load() {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+
+        for (File f : files) {
+            File meta = new File(f, "recording.properties");
+            if (!meta.isFile()) continue;
+            try {
+                Properties p = new Properties();
+                FileInputStream in = new FileInputStream(meta);
+                try {
+                    p.load(in);
+                } finally {
+                    in.close();
+                }
+                Recording r = new Recording(f.getName(), Integer.parseInt(p.getProperty("channel")), p.getProperty("name", f.getName()),
+                        Long.parseLong(p.getProperty("start")), Long.parseLong(p.getProperty("end")));
+                r.read();
+                recordings.put(r.id, r);
+                if (r.end > System.currentTimeMillis()) r.start(r.start - System.currentTimeMillis());
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        prune();
+    }
+
+    final class Recording extends Follower {
+        final String id;
+        final int num;
+        final String name;
+        final long start;
+        final long end;
+        private final File dir;
+        private final List<Double> durations = new ArrayList<>();
+        private final List<Boolean> gaps = new ArrayList<>();
+        private boolean gap;
+        private long bytes;
+        private boolean removed;
+
+        Recording(String id, int num, String name, long start, long end) {
+            super(String.format(Locale.US, "%02d", num), source, 1);
+            this.id = id;
+            this.num = num;
+            this.name = name;
+            this.start = start;
+            this.end = end;
+            dir = new File(Recorder.this.dir, id);
+        }
+
+        File getFile(String segment) {
+            try {
+                int n = Integer.parseInt(segment);
+                synchronized (this) {
+                    if (n < 0 || n >= durations.size()) return null;
+                }
+                return new File(dir, n + ".ts");
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        synchronized String render() {
+            double target = 1;
+            for (double d : durations) target = Math.max(target, d);
+
+            boolean done = isStopped() || end < System.currentTimeMillis();
+            StringBuilder out = new StringBuilder("#EXTM3U\n#EXT-X-VERSION:3\n");
+            out.append("#EXT-X-TARGETDURATION:").append((int) Math.ceil(target)).append('\n');
+            out.append("#EXT-X-MEDIA-SEQUENCE:0\n#EXT-X-PLAYLIST-TYPE:").append(done ? "VOD" : "EVENT").append('\n');
+            for (int i = 0; i < durations.size(); i++) {
+                if (gaps.get(i) && i > 0) out.append("#EXT-X-DISCONTINUITY\n");
+                out.append(String.format(Locale.US, "#EXTINF:%.3f,\n", durations.get(i)));
+                out.append(id).append('/').append(i).append(".ts\n");
+            }
+            if (done) out.append("#EXT-X-ENDLIST\n");
+            return out.toString();
+        }
+
+        @Override
+        boolean isFinished() {
+            return end < System.currentTimeMillis();
+        }
+
+        @Override
+        void accept(List<Chunk> chunks) {
+            int first;
+            synchronized (this) {
+                first = durations.size();
+            }
+
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < chunks.size(); i++) {
+                final String url = chunks.get(i).url;
+                final File f = new File(dir, (first + i) + ".ts.tmp");
+                results.add(downloads.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        return download(url, f);
+                    }
+                }));
+            }
+
+            int n = first;
+            for (int i = 0; i < chunks.size(); i++) {
+                Chunk c = chunks.get(i);
+                boolean ok = false;
+                try {
+                    ok = results.get(i).get();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+                File tmp = new File(dir, (first + i) + ".ts.tmp");
+                gap |= c.gap;
+                if (ok && tmp.renameTo(new File(dir, n + ".ts"))) {
+                    append(n++, c.duration, gap);
+                    gap = false;
+                } else {
+                    if (!tmp.delete() && tmp.exists()) tmp.deleteOnExit();
+                    gap = true;
+                }
+            }
+            if (prune() > quota) stop();
+        }
+
+        @Override
+        void finish() {
+            if (isRemoved()) deleteFiles();
+        }
+
+        synchronized long getBytes() {
+            return bytes;
+        }
+
+        private synchronized boolean isRemoved() {
+            return removed;
+        }
+
+        private void delete() {
+            stop();
+            synchronized (this) {
+                removed = true;
+                durations.clear();
+                gaps.clear();
+                bytes = 0;
+            }
+            deleteFiles();
+        }
+
+        private void deleteFiles() {
+            File[] files = dir.listFiles();
+            if (files != null) for (File f : files) if (!f.delete() && f.exists()) f.deleteOnExit();
+            if (!dir.delete() && dir.exists()) dir.deleteOnExit();
+        }
+
+        private boolean download(String url, File f) {
+            for (int i = 0; i < RETRIES; i++) {
+                Segment s = fetcher.get(url);
+                if (s != null) try {
+                    if (s.awaitComplete()) {
+                        FileOutputStream out = new FileOutputStream(f);
+                        try {
+                            s.copyTo(out.getChannel());
+                        } finally {
+                            out.close();
+                        }
+                        return true;
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                } finally {
+                    s.release();
+                }
+                try {
+                    Thread.sleep(RETRY << i);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return false;
+        }
+
+        private synchronized void append(int n, double duration, boolean gap) {
+            if (removed || n != durations.size()) return;
+            durations.add(duration);
+            gaps.add(gap);
+            bytes += new File(dir, n + ".ts").length();
+            try {
+                Writer out = new FileWriter(new File(dir, "segments.txt"), true);
+                try {
+                    out.write(String.format(Locale.US, "%.3f %d\n", duration, gap ? 1 : 0));
+                } finally {
+                    out.close();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        private void save() {
+            Properties p = new Properties();
+            p.setProperty("channel", String.valueOf(num));
+            p.setProperty("name", name);
+            p.setProperty("start", String.valueOf(start));
+            p.setProperty("end", String.valueOf(end));
+            try {
+                if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create " + dir);
+                FileOutputStream out = new FileOutputStream(new File(dir, "recording.properties"));
+                try {
+                    p.store(out, null);
+                } finally {
+                    out.close();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        private synchronized void read() throws IOException {
+            File f = new File(dir, "segments.txt");
+            if (!f.isFile()) return;
+
+            BufferedReader in = new BufferedReader(new FileReader(f));
+            try {
+                for (String line; (line = in.readLine()) != null; ) {
+                    int i = line.indexOf(' ');
+                    if (i == -1) continue;
+                    bytes += new File(dir, durations.size() + ".ts").length();
+                    durations.add(Double.parseDouble(line.substring(0, i)));
+                    gaps.add(line.substring(i + 1).trim().equals("1"));
+                }
+            } finally {
+                in.close();
+            }
+            gap = true;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+    MIT License
+
+    Copyright (c) 2017 mr-notorious
+
+    Permission is hereby granted, free of charge, to any person obtaining a copy
+    of this software and associated documentation files (the "Software"), to deal
+    in the Software without restriction, including without limitation the rights
+    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+    copies of the Software, and to permit persons to whom the Software is
+    furnished to do so, subject to the following conditions:
+
+    The above copyright notice and this permission notice shall be included in all
+    copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+    SOFTWARE.
+ */
+
+package com.notorious.smoothproxy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+final class Rendered {
+    final byte[] bytes;
+    final String type;
+    final String etag;
+    final byte[] gzip;
+    final String gzipEtag;
+
+    Rendered(String text, String type) {
+        this(text.getBytes(Charset.forName("UTF-8")), type);
+    }
+
+    Rendered(byte[] bytes, String type) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        this.bytes = bytes;
+        this.type = type;
+        String tag = Long.toHexString(crc.getValue()) + "-" + Integer.toHexString(bytes.length);
+        etag = "\"" + tag + "\"";
+        gzip = compress(bytes);
+        gzipEtag = "\"" + tag + "-gz\"";
+    }
+
+    private static byte[] compress(byte[] bytes) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 64);
+            GZIPOutputStream gz = new GZIPOutputStream(out);
+            gz.write(bytes);
+            gz.close();
+            return out.toByteArray();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+    MIT License
+
+    Copyright (c) 2017 mr-notorious
+
+    Permission is hereby granted, free of charge, to any person obtaining a copy
+    of this software and associated documentation files (the "Software"), to deal
+    in the Software without restriction, including without limitation the rights
+    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+    copies of the Software, and to permit persons to whom the Software is
+    furnished to do so, subject to the following conditions:
+
+    The above copyright notice and this permission notice shall be included in all
+    copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+    SOFTWARE.
+ */
+
+package com.notorious.smoothproxy;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Locale;
+
+final class Ring implements Closeable {
+    private final RandomAccessFile file;
+    private final MappedByteBuffer map;
+    private final ArrayDeque<Entry> index = new ArrayDeque<>();
+    private int head;
+    private long next;
+    private double target;
+
+    Ring(File f, int capacity) throws IOException {
+        file = new RandomAccessFile(f, "rw");
+        file.setLength(capacity);
+        map = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    synchronized boolean append(Segment s, double duration, boolean gap) {
+        long length = s.getLength();
+        if (length <= 0 || length > map.capacity() / 2) return false;
+
+        int len = (int) length;
+        if (head + len > map.capacity()) {
+            while (!index.isEmpty() && index.peekFirst().offset >= head) index.pollFirst().valid = false;
+            head = 0;
+        }
+        while (!index.isEmpty() && index.peekFirst().offset < head + len && index.peekFirst().offset >= head) index.pollFirst().valid = false;
+
+        ByteBuffer b = map.duplicate();
+        b.position(head).limit(head + len);
+        s.copyTo(b);
+        index.addLast(new Entry(next++, head, len, duration, gap));
+        head += len;
+        target = Math.max(target, duration);
+        notifyAll();
+        return true;
+    }
+
+    synchronized boolean await(long millis) {
+        long end = System.currentTimeMillis() + millis;
+        try {
+            for (long left; index.isEmpty() && (left = end - System.currentTimeMillis()) > 0; ) wait(left);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return !index.isEmpty();
+    }
+
+    synchronized Entry get(long sequence) {
+        for (Entry e : index) if (e.sequence == sequence) return e;
+        return null;
+    }
+
+    synchronized String render(String prefix) {
+        StringBuilder out = new StringBuilder("#EXTM3U\n#EXT-X-VERSION:3\n");
+        out.append("#EXT-X-TARGETDURATION:").append((int) Math.ceil(target)).append('\n');
+        out.append("#EXT-X-MEDIA-SEQUENCE:").append(index.isEmpty() ? next : index.peekFirst().sequence).append('\n');
+        boolean first = true;
+        for (Entry e : index) {
+            if (e.gap && !first) out.append("#EXT-X-DISCONTINUITY\n");
+            out.append(String.format(Locale.US, "#EXTINF:%.3f,\n", e.duration));
+            out.append(prefix).append(e.sequence).append(".ts\n");
+            first = false;
+        }
+        return out.toString();
+    }
+
+    InputStream newStream(final Entry e) {
+        final ByteBuffer b = map.duplicate();
+        b.position(e.offset).limit(e.offset + e.length);
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                if (!b.hasRemaining()) return -1;
+                int v = b.get() & 0xff;
+                check();
+                return v;
+            }
+
+            @Override
+            public int read(byte[] dst, int off, int len) throws IOException {
+                if (len == 0) return 0;
+                if (!b.hasRemaining()) return -1;
+                len = Math.min(len, b.remaining());
+                b.get(dst, off, len);
+                check();
+                return len;
+            }
+
+            // The writer invalidates an entry before overwriting it, so a copy is only good if the entry is still valid afterwards.
+            private void check() throws IOException {
+                if (!e.valid) throw new IOException("Segment overwritten");
+            }
+        };
+    }
+
+    @Override
+    public synchronized void close() {
+        for (Entry e : index) e.valid = false;
+        index.clear();
+        try {
+            file.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    static final class Entry {
+        final long sequence;
+        final int offset;
+        final int length;
+        final double duration;
+        final boolean gap;
+        volatile boolean valid = true;
+
+        Entry(long sequence, int offset, int length, double duration, boolean gap) {
+            this.sequence = sequence;
+            this.offset = offset;
+            this.length = length;
+            this.duration = duration;
+            this.gap = gap;
+        }
+    }
+}
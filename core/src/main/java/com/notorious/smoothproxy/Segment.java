@@ -0,0 +1,223 @@
+/*
+    MIT License
+
+    Copyright (c) 2017 mr-notorious
+
+    Permission is hereby granted, free of charge, to any person obtaining a copy
+    of this software and associated documentation files (the "Software"), to deal
+    in the Software without restriction, including without limitation the rights
+    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+    copies of the Software, and to permit persons to whom the Software is
+    furnished to do so, subject to the following conditions:
+
+    The above copyright notice and this permission notice shall be included in all
+    copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+    SOFTWARE.
+ */
+
+package com.notorious.smoothproxy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+final class Segment {
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private final BufferPool pool;
+    private String type;
+    private long length = -1;
+    private int size;
+    private int refs = 1;
+    private boolean open;
+    private boolean done;
+    private boolean failed;
+    private List<Sessions.Session> watchers;
+    volatile long time;
+    volatile long nanos;
+
+    Segment(BufferPool pool) {
+        this.pool = pool;
+    }
+
+    synchronized String getType() {
+        return type;
+    }
+
+    synchronized long getLength() {
+        return done && !failed ? size : length;
+    }
+
+    synchronized long getReceived() {
+        return size;
+    }
+
+    synchronized long getFootprint() {
+        return (long) chunks.size() * BufferPool.CHUNK;
+    }
+
+    synchronized void open(String type, long length) {
+        this.type = type;
+        this.length = length;
+        open = true;
+        notifyAll();
+    }
+
+    void fill(InputStream in) throws IOException {
+        ReadableByteChannel ch = Channels.newChannel(in);
+        ByteBuffer chunk = null;
+        for (int n; ; ) {
+            if (chunk == null || !chunk.hasRemaining()) {
+                chunk = pool.acquire();
+                synchronized (this) {
+                    chunks.add(chunk);
+                }
+            }
+            if ((n = ch.read(chunk)) == -1) break;
+            synchronized (this) {
+                size += n;
+                notifyAll();
+            }
+        }
+    }
+
+    void finish(boolean ok) {
+        List<Sessions.Session> w;
+        synchronized (this) {
+            done = true;
+            failed = !ok;
+            time = System.currentTimeMillis();
+            notifyAll();
+            w = watchers;
+            watchers = null;
+        }
+        if (ok && w != null) for (Sessions.Session s : w) s.report(nanos);
+    }
+
+    void watch(Sessions.Session s) {
+        synchronized (this) {
+            if (!done) {
+                if (watchers == null) watchers = new ArrayList<>();
+                if (!watchers.contains(s)) watchers.add(s);
+                return;
+            }
+            if (failed) return;
+        }
+        s.report(nanos);
+    }
+
+    synchronized boolean await() {
+        try {
+            while (!open && !done) wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return open;
+    }
+
+    synchronized boolean awaitComplete() {
+        try {
+            while (!done) wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return done && !failed;
+    }
+
+    synchronized void copyTo(ByteBuffer dst) {
+        int left = size;
+        for (ByteBuffer chunk : chunks) {
+            if (left == 0) break;
+            ByteBuffer b = chunk.duplicate();
+            b.position(0).limit(Math.min(left, BufferPool.CHUNK));
+            left -= b.remaining();
+            dst.put(b);
+        }
+    }
+
+    synchronized void copyTo(WritableByteChannel dst) throws IOException {
+        int left = size;
+        for (ByteBuffer chunk : chunks) {
+            if (left == 0) break;
+            ByteBuffer b = chunk.duplicate();
+            b.position(0).limit(Math.min(left, BufferPool.CHUNK));
+            left -= b.remaining();
+            while (b.hasRemaining()) dst.write(b);
+        }
+    }
+
+    synchronized boolean isComplete() {
+        return done && !failed;
+    }
+
+    synchronized boolean retain() {
+        if (refs == 0) return false;
+        refs++;
+        return true;
+    }
+
+    synchronized void release() {
+        if (refs > 0 && --refs == 0) {
+            for (ByteBuffer b : chunks) pool.release(b);
+            chunks.clear();
+        }
+    }
+
+    InputStream newStream() {
+        return new InputStream() {
+            private int pos;
+            private boolean closed;
+
+            @Override
+            public int read() throws IOException {
+                byte[] b = new byte[1];
+                return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) return 0;
+                ByteBuffer chunk;
+                synchronized (Segment.this) {
+                    if (closed) throw new IOException("Stream closed");
+                    try {
+                        while (pos == size && !done) Segment.this.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException(e);
+                    }
+                    if (pos == size) {
+                        if (failed) throw new IOException("Upstream segment failed");
+                        return -1;
+                    }
+                    chunk = chunks.get(pos / BufferPool.CHUNK).duplicate();
+                    len = Math.min(len, Math.min(size - pos, BufferPool.CHUNK - pos % BufferPool.CHUNK));
+                }
+                chunk.position(pos % BufferPool.CHUNK);
+                chunk.get(b, off, len);
+                pos += len;
+                return len;
+            }
+
+            @Override
+            public void close() {
+                synchronized (Segment.this) {
+                    if (closed) return;
+                    closed = true;
+                }
+                release();
+            }
+        };
+    }
+}
@@ -0,0 +1,127 @@
+/*
+    MIT License
+
+    Copyright (c) 2017 mr-notorious
+
+    Permission is hereby granted, free of charge, to any person obtaining a copy
+    of this software and associated documentation files (the "Software"), to deal
+    in the Software without restriction, including without limitation the rights
+    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+    copies of the Software, and to permit persons to whom the Software is
+    furnished to do so, subject to the following conditions:
+
+    The above copyright notice and this permission notice shall be included in all
+    copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+    SOFTWARE.
+ */
+
+package com.notorious.smoothproxy;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+final class SegmentCache {
+    private final LinkedHashMap<String, Segment> map = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private long budget;
+    private final long ttl;
+    private long bytes;
+
+    SegmentCache(long budget, long ttl) {
+        this.budget = budget;
+        this.ttl = ttl;
+    }
+
+    synchronized Segment get(String key) {
+        Segment s = map.get(key);
+        if (s != null && s.time + ttl < System.currentTimeMillis()) {
+            remove(key);
+            evictions.incrementAndGet();
+            s = null;
+        }
+        if (s != null && s.retain()) {
+            hits.incrementAndGet();
+            return s;
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    synchronized boolean contains(String key) {
+        return map.containsKey(key);
+    }
+
+    synchronized void put(String key, Segment s) {
+        long footprint = s.getFootprint();
+        if (footprint > budget) {
+            s.release();
+            return;
+        }
+        remove(key);
+        map.put(key, s);
+        bytes += footprint;
+        trim();
+    }
+
+    synchronized void setBudget(long budget) {
+        this.budget = budget;
+        trim();
+    }
+
+    private void trim() {
+        long now = System.currentTimeMillis();
+        for (Iterator<Segment> it = map.values().iterator(); it.hasNext(); ) {
+            Segment e = it.next();
+            if (bytes > budget || e.time + ttl < now) {
+                it.remove();
+                bytes -= e.getFootprint();
+                e.release();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    synchronized void clear() {
+        for (Segment s : map.values()) s.release();
+        map.clear();
+        bytes = 0;
+    }
+
+    private void remove(String key) {
+        Segment s = map.remove(key);
+        if (s != null) {
+            bytes -= s.getFootprint();
+            s.release();
+        }
+    }
+
+    synchronized long getBytes() {
+        return bytes;
+    }
+
+    synchronized int getCount() {
+        return map.size();
+    }
+
+    long getHits() {
+        return hits.get();
+    }
+
+    long getMisses() {
+        return misses.get();
+    }
+
+    long getEvictions() {
+        return evictions.get();
+    }
+}
@@ -0,0 +1,261 @@
+/*
+    MIT License
+
+    Copyright (c) 2017 mr-notorious
+
+    Permission is hereby granted, free of charge, to any person obtaining a copy
+    of this software and associated documentation files (the "Software"), to deal
+    in the Software without restriction, including without limitation the rights
+    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+    copies of the Software, and to permit persons to whom the Software is
+    furnished to do so, subject to the following conditions:
+
+    The above copyright notice and this permission notice shall be included in all
+    copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+    SOFTWARE.
+ */
+
+package com.notorious.smoothproxy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import okhttp3.Call;
+
+final class SegmentFetcher {
+    private static final int DOWNLOADS = 8;
+    private static final int ATTEMPTS = 3;
+    private static final long DEADLINE = 30000;
+    private static final long DEADLINE_MIN = 2000;
+    private static final long HEDGE = 1000;
+    private static final long HEDGE_MIN = 200;
+    private static final int SAMPLES = 20;
+    private static final ScheduledThreadPoolExecutor WATCHDOG = new ScheduledThreadPoolExecutor(1);
+    private final ConcurrentHashMap<String, Segment> flights = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(DOWNLOADS, DOWNLOADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+    private final ThreadPoolExecutor requests = new ThreadPoolExecutor(DOWNLOADS * 2, DOWNLOADS * 2, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+    private final BufferPool pool;
+    private final SegmentCache cache;
+
+    SegmentFetcher(long budget, long ttl) {
+        pool = new BufferPool(budget);
+        cache = new SegmentCache(budget, ttl);
+        executor.allowCoreThreadTimeOut(true);
+        requests.allowCoreThreadTimeOut(true);
+    }
+
+    static String getKey(String url) {
+        int i = url.indexOf('?');
+        return i != -1 ? url.substring(0, i) : url;
+    }
+
+    static long getDeadline(double seconds) {
+        return Math.max((long) (seconds * 1000), DEADLINE_MIN);
+    }
+
+    void setBudget(long budget) {
+        pool.setBudget(budget);
+        cache.setBudget(budget);
+    }
+
+    SegmentCache getCache() {
+        return cache;
+    }
+
+    Segment get(String url) {
+        return get(url, url, 0);
+    }
+
+    Segment get(String url, String hedge, long deadline) {
+        String key = getKey(url);
+        long end = getEnd(deadline);
+        Segment s;
+        while ((s = cache.get(key)) == null) {
+            s = flights.get(key);
+            if (s == null) {
+                Segment n = new Segment(pool);
+                s = flights.putIfAbsent(key, n);
+                if (s == null) {
+                    s = n;
+                    s.retain();
+                    fetch(key, url, hedge, deadline, end, n);
+                    break;
+                }
+            }
+            if (s.retain()) break;
+        }
+        if (s.await()) return s;
+        s.release();
+        return null;
+    }
+
+    void prefetch(String url, long deadline) {
+        String key = getKey(url);
+        if (cache.contains(key) || flights.containsKey(key)) return;
+
+        Segment n = new Segment(pool);
+        if (flights.putIfAbsent(key, n) == null) download(key, url, url, deadline, getEnd(deadline), n);
+    }
+
+    private static long getEnd(long deadline) {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadline > 0 ? deadline : DEADLINE);
+    }
+
+    private void fetch(final String key, final String url, final String hedge, final long deadline, final long end, final Segment s) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                download(key, url, hedge, deadline, end, s);
+            }
+        });
+    }
+
+    private HttpClient.Content open(String url, String hedge, long end) {
+        final AtomicBoolean claimed = new AtomicBoolean();
+        List<Call> calls = new ArrayList<>();
+        ExecutorCompletionService<HttpClient.Content> results = new ExecutorCompletionService<>(requests);
+        long start = System.nanoTime();
+        long wait = getHedgeDelay();
+        if (end - start <= 0) {
+            Metrics.increment("segment_deadlines", "");
+            return null;
+        }
+
+        submit(results, calls, url, claimed);
+        int attempts = 1;
+        int pending = 1;
+        boolean hedged = false;
+        HttpClient.Content c = null;
+        try {
+            while (pending > 0) {
+                long left = end - System.nanoTime();
+                Future<HttpClient.Content> f = results.poll(hedged ? left : Math.min(left, wait), TimeUnit.NANOSECONDS);
+                if (f == null) {
+                    if (System.nanoTime() - end >= 0) break;
+                    hedged = true;
+                    if (attempts < ATTEMPTS) {
+                        submit(results, calls, hedge, claimed);
+                        Metrics.increment("segment_hedges", "");
+                        attempts++;
+                        pending++;
+                    }
+                    continue;
+                }
+
+                pending--;
+                c = f.get();
+                if (c != null) {
+                    Metrics.record("segment_ttfb", "", start);
+                    break;
+                }
+                if (attempts < ATTEMPTS && System.nanoTime() - end < 0) {
+                    submit(results, calls, attempts % 2 == 0 ? url : hedge, claimed);
+                    Metrics.increment("segment_retries", "");
+                    attempts++;
+                    pending++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+        }
+
+        if (c == null) {
+            if (claimed.compareAndSet(false, true)) {
+                if (pending > 0) Metrics.increment("segment_deadlines", "");
+            } else try {
+                while (c == null) c = results.take().get();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+
+        for (Call call : calls) if (c == null || call != c.call) call.cancel();
+        return c;
+    }
+
+    private void submit(ExecutorCompletionService<HttpClient.Content> results, List<Call> calls, String url, final AtomicBoolean claimed) {
+        final Call call = HttpClient.newCall(url);
+        calls.add(call);
+        results.submit(new Callable<HttpClient.Content>() {
+            @Override
+            public HttpClient.Content call() {
+                HttpClient.Content c = claimed.get() ? null : HttpClient.getContent(call);
+                if (c != null && !claimed.compareAndSet(false, true)) {
+                    c.close();
+                    return null;
+                }
+                return c;
+            }
+        });
+    }
+
+    private static ScheduledFuture<?> watch(final HttpClient.Content c, final Segment s, long stall) {
+        return WATCHDOG.scheduleWithFixedDelay(new Runnable() {
+            private long last = -1;
+
+            @Override
+            public void run() {
+                long n = s.getReceived();
+                if (n == last) {
+                    Metrics.increment("segment_stalls", "");
+                    c.cancel();
+                }
+                last = n;
+            }
+        }, stall, stall, TimeUnit.MILLISECONDS);
+    }
+
+    private static long getHedgeDelay() {
+        Metrics.Histogram h = Metrics.getHistogram("segment_ttfb", "");
+        long micros = h.getCount() >= SAMPLES ? h.getPercentile(0.95) : HEDGE * 1000;
+        return TimeUnit.MICROSECONDS.toNanos(Math.max(micros, HEDGE_MIN * 1000));
+    }
+
+    private void download(String key, String url, String hedge, long deadline, long end, Segment s) {
+        long start = System.nanoTime();
+        HttpClient.Content c = open(url, hedge, end);
+        ScheduledFuture<?> watchdog = null;
+        try {
+            if (c != null) {
+                watchdog = watch(c, s, deadline > 0 ? deadline : DEADLINE);
+                s.open(c.type, c.length);
+                s.fill(c.response);
+                s.nanos = System.nanoTime() - start;
+            }
+            s.finish(c != null);
+        } catch (Exception e) {
+            e.printStackTrace();
+            s.finish(false);
+        } finally {
+            if (watchdog != null) watchdog.cancel(false);
+            if (s.isComplete()) cache.put(key, s);
+            else s.release();
+            flights.remove(key, s);
+            if (c != null) c.close();
+        }
+    }
+
+    void clear() {
+        cache.clear();
+    }
+}
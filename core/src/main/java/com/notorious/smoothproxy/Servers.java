@@ -0,0 +1,192 @@
+/*
+    MIT License
+
+    Copyright (c) 2017 mr-notorious
+
+    Permission is hereby granted, free of charge, to any person obtaining a copy
+    of this software and associated documentation files (the "Software"), to deal
+    in the Software without restriction, including without limitation the rights
+    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+    copies of the Software, and to permit persons to whom the Software is
+    furnished to do so, subject to the following conditions:
+
+    The above copyright notice and this permission notice shall be included in all
+    copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+    SOFTWARE.
+ */
+
+package com.notorious.smoothproxy;
+
+import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+final class Servers {
+    static final String AUTO = "auto";
+    static final String[] KNOWN = {
+            "dnae1", "dnae2", "dnae3", "dnae4", "dnae6",
+            "dnaw1", "dnaw2", "dnaw3", "dnaw4",
+            "deu-nl1", "deu-nl2", "deu-nl3", "deu-nl4", "deu-nl5", "deu-uk1", "deu-uk2"
+    };
+    private static final long PROBE = 600000;
+    private static final long PENALTY = 120000;
+    private static final int SAMPLES = 3;
+    private static final double ALPHA = 0.5;
+    private static final double SEGMENT = 1000000;
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor();
+    private final String[] names;
+    private final double[] ttfb;
+    private final double[] rate;
+    private final long[] failed;
+    private volatile long probed;
+    private Runnable task;
+    private Future<?> next;
+
+    Servers(String... names) {
+        this.names = names;
+        ttfb = new double[names.length];
+        rate = new double[names.length];
+        failed = new long[names.length];
+    }
+
+    static String getUrl(String server, String service, String channel, int quality) {
+        return "https://" + server + ".smoothstreams.tv/" + service + "/ch" + channel + "q" + (Integer.parseInt(channel) < 61 ? quality : 1) + ".stream";
+    }
+
+    synchronized void start(final Auth auth, final String service, final int quality) {
+        stop();
+        task = new Runnable() {
+            @Override
+            public void run() {
+                probe(auth, service, quality);
+            }
+        };
+        next = EXECUTOR.submit(task);
+    }
+
+    synchronized void stop() {
+        if (next != null) next.cancel(false);
+        next = null;
+        task = null;
+    }
+
+    // Called on viewer traffic; ranks are refreshed only while someone is watching.
+    void touch() {
+        if (probed + PROBE < System.currentTimeMillis()) wake();
+    }
+
+    private synchronized void wake() {
+        if (task != null && (next == null || next.isDone())) next = EXECUTOR.submit(task);
+    }
+
+    synchronized String getBest(String exclude) {
+        long now = System.currentTimeMillis();
+        int best = -1;
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(exclude) || failed[i] + PENALTY > now) continue;
+            if (best == -1 || getScore(i) < getScore(best)) best = i;
+        }
+        if (best == -1) for (int i = 0; i < names.length; i++) {
+            if (!names[i].equals(exclude) && (best == -1 || failed[i] < failed[best])) best = i;
+        }
+        return best != -1 ? names[best] : exclude;
+    }
+
+    synchronized void fail(String server) {
+        for (int i = 0; i < names.length; i++) if (names[i].equals(server)) failed[i] = System.currentTimeMillis();
+    }
+
+    private synchronized void report(int i, long ttfb, double rate) {
+        this.ttfb[i] = this.ttfb[i] == 0 ? ttfb : this.ttfb[i] * (1 - ALPHA) + ttfb * ALPHA;
+        if (rate > 0) this.rate[i] = this.rate[i] == 0 ? rate : this.rate[i] * (1 - ALPHA) + rate * ALPHA;
+    }
+
+    private double getScore(int i) {
+        if (ttfb[i] == 0) return Double.MAX_VALUE / 2;
+        return ttfb[i] + (rate[i] > 0 ? SEGMENT / rate[i] * 1000 : PENALTY);
+    }
+
+    private void probe(Auth auth, String service, int quality) {
+        probed = System.currentTimeMillis();
+        String hash = auth.get();
+        if (hash == null) return;
+
+        Integer[] order = new Integer[names.length];
+        for (int i = 0; i < names.length; i++) {
+            String url = getUrl(names[i], service, "01", quality);
+            long start = System.currentTimeMillis();
+            String text = HttpClient.getText(url + "/playlist.m3u8?wmsAuthSign=" + hash);
+            if (text == null) {
+                fail(names[i]);
+                continue;
+            }
+            report(i, System.currentTimeMillis() - start, 0);
+            order[i] = i;
+        }
+
+        int probed = 0;
+        for (int i : getRanked(order)) {
+            if (probed++ == SAMPLES) break;
+            double r = getRate(getUrl(names[i], service, "01", quality), hash);
+            if (r > 0) report(i, (long) ttfb[i], r);
+            else fail(names[i]);
+        }
+    }
+
+    private synchronized int[] getRanked(Integer[] order) {
+        int n = 0;
+        int[] ranked = new int[order.length];
+        for (Integer i : order) if (i != null) ranked[n++] = i;
+        for (int i = 1; i < n; i++) {
+            for (int j = i; j > 0 && getScore(ranked[j]) < getScore(ranked[j - 1]); j--) {
+                int t = ranked[j];
+                ranked[j] = ranked[j - 1];
+                ranked[j - 1] = t;
+            }
+        }
+        int[] out = new int[n];
+        System.arraycopy(ranked, 0, out, 0, n);
+        return out;
+    }
+
+    private static double getRate(String url, String hash) {
+        String variant = HttpClient.getText(url + "/playlist.m3u8?wmsAuthSign=" + hash);
+        String chunks = variant != null ? getFirst(variant) : null;
+        String media = chunks != null ? HttpClient.getText(url + "/" + chunks) : null;
+        String segment = media != null ? getFirst(media) : null;
+        if (segment == null) return 0;
+
+        long start = System.nanoTime();
+        HttpClient.Content c = HttpClient.getContent(url + "/" + segment);
+        if (c == null) return 0;
+        try {
+            long total = 0;
+            byte[] b = new byte[16384];
+            InputStream in = c.response;
+            for (int n; (n = in.read(b)) != -1; ) total += n;
+            long nanos = System.nanoTime() - start;
+            return nanos > 0 ? total * 1e9 / nanos : 0;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return 0;
+        } finally {
+            c.close();
+        }
+    }
+
+    static String getFirst(String playlist) {
+        for (String line : playlist.split("\\r?\\n")) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#")) return line;
+        }
+        return null;
+    }
+}
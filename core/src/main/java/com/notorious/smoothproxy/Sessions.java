@@ -0,0 +1,185 @@
+/*
+    MIT License
+
+    Copyright (c) 2017 mr-notorious
+
+    Permission is hereby granted, free of charge, to any person obtaining a copy
+    of this software and associated documentation files (the "Software"), to deal
+    in the Software without restriction, including without limitation the rights
+    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+    copies of the Software, and to permit persons to whom the Software is
+    furnished to do so, subject to the following conditions:
+
+    The above copyright notice and this permission notice shall be included in all
+    copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+    SOFTWARE.
+ */
+
+package com.notorious.smoothproxy;
+
+import java.security.SecureRandom;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+final class Sessions {
+    private static final long IDLE = 120000;
+    private static final long HOLD = 30000;
+    private static final double ALPHA = 0.4;
+    private static final double DOWN = 0.7;
+    private static final double UP = 0.3;
+    private static final int WORST = 3;
+    private final ConcurrentHashMap<String, Session> map = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+
+    Session open(String channel, Auth auth, String server, String url, int quality) {
+        evict();
+        Session s;
+        do {
+            s = new Session(Long.toHexString(random.nextLong() & Long.MAX_VALUE), channel, auth, server, url, quality);
+        } while (map.putIfAbsent(s.token, s) != null);
+        return s;
+    }
+
+    Session get(String token) {
+        Session s = map.get(token);
+        if (s != null) s.time = System.currentTimeMillis();
+        return s;
+    }
+
+    int size() {
+        return map.size();
+    }
+
+    Auth find(String channel, long active) {
+        for (Session s : map.values()) if (s.channel.equals(channel) && s.isActive(active)) return s.auth;
+        return null;
+    }
+
+    int count(Auth auth, long active) {
+        int n = 0;
+        for (Session s : map.values()) if (s.auth == auth && s.isActive(active)) n++;
+        return n;
+    }
+
+    void evict() {
+        long now = System.currentTimeMillis();
+        for (Iterator<Session> it = map.values().iterator(); it.hasNext(); ) {
+            Session s = it.next();
+            if (s.isIdle(now)) {
+                s.closed = true;
+                it.remove();
+            }
+        }
+    }
+
+    void clear() {
+        for (Session s : map.values()) s.closed = true;
+        map.clear();
+    }
+
+    static final class Session {
+        final String token;
+        final String channel;
+        final Auth auth;
+        volatile String server;
+        volatile String url;
+        volatile String query;
+        volatile double duration;
+        volatile int quality;
+        volatile boolean warm;
+        final long tuned = System.nanoTime();
+        volatile long time;
+        volatile boolean closed;
+        private final int best;
+        private double ratio;
+        private long changed;
+        private boolean started;
+        private String alternate;
+        private String alternateQuery;
+
+        Session(String token, String channel, Auth auth, String server, String url, int quality) {
+            this.token = token;
+            this.channel = channel;
+            this.auth = auth;
+            this.server = server;
+            this.url = url;
+            this.quality = best = quality;
+            time = changed = System.currentTimeMillis();
+        }
+
+        synchronized boolean start() {
+            if (started) return false;
+            started = true;
+            return true;
+        }
+
+        synchronized boolean isStarted() {
+            return started;
+        }
+
+        synchronized void report(long nanos) {
+            if (best == 0 || duration <= 0 || nanos <= 0) return;
+
+            double r = nanos / 1e9 / duration;
+            ratio = ratio == 0 ? r : ratio * (1 - ALPHA) + r * ALPHA;
+            long now = System.currentTimeMillis();
+            if (ratio > DOWN && quality < WORST) quality++;
+            else if (ratio < UP && quality > best && changed + HOLD < now) quality--;
+            else return;
+            ratio = 0;
+            changed = now;
+        }
+
+        synchronized String getTarget() {
+            if (best == 0) return url;
+            return url.replaceFirst("q\\d+\\.stream$", "q" + quality + ".stream");
+        }
+
+        synchronized boolean move(String from, String server, String url, String query) {
+            if (!from.equals(this.url)) return false;
+            this.query = query;
+            this.url = url;
+            this.server = server;
+            alternate = alternateQuery = null;
+            return true;
+        }
+
+        synchronized String claimAlternate(String server) {
+            if (server.equals(this.server) || server.equals(alternate)) return null;
+            alternate = server;
+            alternateQuery = null;
+            return getAlternateUrl();
+        }
+
+        synchronized void setAlternate(String url, String query) {
+            if (alternate != null && url.equals(getAlternateUrl())) alternateQuery = query;
+        }
+
+        synchronized String getAlternate(String path) {
+            return alternateQuery != null ? getAlternateUrl() + path + "?" + alternateQuery : null;
+        }
+
+        private String getAlternateUrl() {
+            return url.replace("://" + server + ".", "://" + alternate + ".");
+        }
+
+        boolean isIdle(long now) {
+            return time + IDLE < now;
+        }
+
+        boolean isActive(long idle) {
+            return !closed && time + idle >= System.currentTimeMillis();
+        }
+
+        String getPath() {
+            return "/s/" + token + "/";
+        }
+    }
+}
@@ -0,0 +1,537 @@
+/*
+    MIT License
+
+    Copyright (c) 2017 mr-notorious
+
+    Permission is hereby granted, free of charge, to any person obtaining a copy
+    of this software and associated documentation files (the "Software"), to deal
+    in the Software without restriction, including without limitation the rights
+    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+    copies of the Software, and to permit persons to whom the Software is
+    furnished to do so, subject to the following conditions:
+
+    The above copyright notice and this permission notice shall be included in all
+    copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+    SOFTWARE.
+ */
+
+package com.notorious.smoothproxy;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import fi.iki.elonen.NanoHTTPD;
+
+public final class SmoothProxy extends NanoHTTPD {
+    private static final long CACHE_BUDGET = 32 * 1024 * 1024;
+    private static final long CACHE_TTL = 60000;
+    private static final int PREFETCH = 3;
+    private static final int WORKERS = 16;
+    private static final int KEEP_ALIVE = 2000;
+    private static final ThreadPoolExecutor HEDGES = new ThreadPoolExecutor(0, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+    private static final String EPG[] = {"https://sstv.fog.pt/epg", "http://ca.epgrepo.download", "http://eu.epgrepo.download"};
+    private final String host;
+    private final int port;
+    private final Ipc ipc;
+    private final Sessions sessions = new Sessions();
+    private final SegmentFetcher fetcher = new SegmentFetcher(CACHE_BUDGET, CACHE_TTL);
+    private final Prefetcher prefetcher = new Prefetcher(fetcher, PREFETCH);
+    private final Mirrors mirrors = new Mirrors(EPG);
+    private final Warmer warmer = new Warmer();
+    private final EpgCache epg;
+    private final EpgFilter filter;
+    private final ChannelMap channels;
+    private final Sports sports;
+    private final Timeshift timeshift;
+    private final Recorder recorder;
+    private final Snapshot snapshot;
+    private volatile Servers servers = new Servers(Servers.KNOWN);
+    private String service;
+    private String server;
+    private int quality;
+    private volatile boolean fastStart;
+    private volatile int epgHours;
+    private final Accounts accounts = new Accounts();
+    private BoundedRunner runner;
+
+    public SmoothProxy(String host, int port, Ipc ipc) {
+        super(host, port);
+        this.host = host;
+        this.port = port;
+        this.ipc = ipc;
+        setWorkers(WORKERS);
+        epg = new EpgCache(ipc.getCacheDir(), "xmltv1.xml.gz", mirrors);
+        filter = new EpgFilter(ipc.getCacheDir(), "xmltv1.filtered.xml.gz");
+        channels = new ChannelMap(mirrors, host, port);
+        sports = new Sports(host, port);
+        snapshot = new Snapshot(ipc.getCacheDir(), accounts, channels, sports);
+        Runnable save = new Runnable() {
+            @Override
+            public void run() {
+                snapshot.schedule();
+            }
+        };
+        channels.setListener(save);
+        sports.setListener(save);
+        Follower.Source source = new Follower.Source() {
+            @Override
+            public String getChunks(String channel) {
+                if (isAuto()) servers.touch();
+                Auth auth = accounts.assign(sessions, channel);
+                if (auth == null) return null;
+                String url = Servers.getUrl(isAuto() ? servers.getBest(null) : server, service, channel, quality);
+                String text = HttpClient.getText(url + "/playlist.m3u8?wmsAuthSign=" + auth.get());
+                String chunks = text != null ? Servers.getFirst(text) : null;
+                return chunks != null ? url + "/" + chunks : null;
+            }
+        };
+        timeshift = new Timeshift(new File(ipc.getCacheDir(), "timeshift"), fetcher, source);
+        recorder = new Recorder(new File(ipc.getCacheDir(), "recordings"), fetcher, source, sports);
+    }
+
+    public void setWorkers(int workers) {
+        runner = workers > 0 ? new BoundedRunner(workers, workers * 4) : null;
+        setAsyncRunner(runner != null ? runner : new DefaultAsyncRunner());
+    }
+
+    public void setTimeshift(int megabytes) {
+        timeshift.setCapacity(Math.min(megabytes, 1024) * 1024 * 1024);
+    }
+
+    public void setCache(int megabytes) {
+        fetcher.setBudget(Math.max(megabytes, 0) * 1024L * 1024);
+    }
+
+    public void setPrefetch(int count) {
+        prefetcher.setCount(count);
+    }
+
+    public void setEpgWindow(int hours) {
+        epgHours = hours;
+    }
+
+    public void setFastStart(boolean fastStart) {
+        this.fastStart = fastStart;
+        if (!fastStart) warmer.clear();
+    }
+
+    public void setRecording(String regex) {
+        recorder.setRule(regex);
+    }
+
+    public void setRecordingRetention(int megabytes, int days) {
+        recorder.setRetention(megabytes, days);
+    }
+
+    public void setServers(String... names) {
+        Servers s = new Servers(names);
+        Auth auth = accounts.size() > 0 ? accounts.get(0) : null;
+        if (isAuto() && auth != null) s.start(auth, service, quality);
+        servers.stop();
+        servers = s;
+    }
+
+    public void addAccount(String username, String password) {
+        if (username == null || username.isEmpty()) return;
+        accounts.add(login(username, password));
+    }
+
+    private Auth login(String username, String password) {
+        Auth auth = new Auth(username, password, service);
+        auth.setListener(new Runnable() {
+            @Override
+            public void run() {
+                snapshot.schedule();
+            }
+        });
+        if (username != null && !username.isEmpty() && !snapshot.restore(auth)) auth.refresh();
+        return auth;
+    }
+
+    public void addAccounts(String text) {
+        if (text == null) return;
+        for (String line : text.split("[,\\n]")) {
+            int i = line.indexOf(':');
+            if (i > 0) addAccount(line.substring(0, i).trim(), line.substring(i + 1).trim());
+        }
+    }
+
+    public void init(String username, String password, String service, String server, int quality) {
+        this.service = service;
+        this.server = server;
+        this.quality = quality;
+        Auth auth = login(username, password);
+        accounts.set(auth);
+        if (isAuto()) servers.start(auth, service, quality);
+        else servers.stop();
+        sessions.clear();
+        timeshift.clear();
+        warmer.clear();
+        prefetcher.clear();
+        fetcher.clear();
+    }
+
+    @Override
+    public void start(int timeout, boolean daemon) throws IOException {
+        snapshot.load();
+        super.start(runner != null ? Math.min(timeout, KEEP_ALIVE) : timeout, daemon);
+    }
+
+    @Override
+    public void stop() {
+        super.stop();
+        servers.stop();
+        accounts.clear();
+        recorder.stop();
+        sessions.clear();
+        timeshift.clear();
+        warmer.clear();
+        prefetcher.clear();
+    }
+
+    @Override
+    public Response serve(IHTTPSession session) {
+        long start = System.nanoTime();
+        Response res = super.serve(session);
+        String route = "other";
+        String txt = null;
+
+        String path = session.getUri();
+        if (path.startsWith("/s/")) {
+            int i = path.indexOf('/', 3);
+            Sessions.Session s = i != -1 ? sessions.get(path.substring(3, i)) : null;
+            if (s != null) {
+                if (isAuto()) servers.touch();
+                res = getSession(s, path.substring(i), session.getQueryParameterString());
+                if (res.getStatus() == Response.Status.NOT_FOUND && failover(s))
+                    res = getSession(s, path.substring(i), session.getQueryParameterString());
+            }
+            route = path.endsWith(".ts") ? "segment" : "chunks";
+
+        } else if (path.equals("/playlist.m3u8")) {
+            List<String> ch = session.getParameters().get("ch");
+
+            if (ch != null) {
+                if (isAuto()) servers.touch();
+                String srv = isAuto() ? servers.getBest(null) : server;
+                String url = Servers.getUrl(srv, service, ch.get(0), quality);
+                Auth auth = accounts.assign(sessions, ch.get(0));
+                if (auth != null) res = getVariant(sessions.open(ch.get(0), auth, srv, url, Integer.parseInt(ch.get(0)) < 61 ? quality : 0), url, url + path + "?wmsAuthSign=" + auth.get());
+                if (fastStart) warm(srv, ch.get(0));
+                route = "tune";
+                txt = "Channel " + ch.get(0);
+
+            } else {
+                res = getRendered(session, channels.getPlaylist());
+                route = "playlist";
+                txt = "Playlist";
+            }
+
+        } else if (path.equals("/timeshift.m3u8")) {
+            List<String> chs = session.getParameters().get("ch");
+            String ch = chs != null ? channels.getChannel(chs.get(0)) : null;
+            Ring r = ch != null ? timeshift.get(ch) : null;
+            if (ch == null)
+                res = newFixedLengthResponse(Response.Status.BAD_REQUEST, "text/plain", "HTTP/1.1 400 BAD REQUEST");
+            else if (r != null && r.await(15000))
+                res = newFixedLengthResponse(Response.Status.OK, "application/vnd.apple.mpegurl", r.render("timeshift/" + ch + "/"));
+            route = "timeshift";
+            if (ch != null) txt = "Channel " + ch;
+
+        } else if (path.startsWith("/timeshift/") && path.endsWith(".ts")) {
+            res = getTimeshift(path.substring(11, path.length() - 3));
+            route = "timeshift_segment";
+
+        } else if (path.equals("/record")) {
+            res = getRecord(session.getParameters());
+            route = "record";
+
+        } else if (path.equals("/recordings.m3u8")) {
+            res = newFixedLengthResponse(Response.Status.OK, "application/vnd.apple.mpegurl", recorder.render(host, port));
+            route = "recordings";
+            txt = "Playlist";
+
+        } else if (path.startsWith("/recording/")) {
+            res = getRecording(path.substring(11));
+            route = "recording";
+
+        } else if (path.equals("/sports.m3u8")) {
+            res = getRendered(session, sports.getPlaylist(ipc.getPattern()));
+            route = "sports";
+            txt = "Playlist";
+
+        } else if (path.equals("/epg.xml.gz")) {
+            res = getEpg();
+            route = "epg";
+            txt = "EPG";
+
+        } else if (path.equals("/sports.xml")) {
+            res = getResponse("https://guide.smoothstreams.tv/feed.xml", session.getHeaders().get("accept-encoding"));
+            route = "sports_xml";
+            txt = "EPG";
+
+        } else if (path.equals("/metrics")) {
+            res = getMetrics();
+            route = "metrics";
+        }
+
+        if (txt != null) ipc.setNotification("Now serving: " + txt);
+        res.addHeader("Access-Control-Allow-Origin", "*");
+        // A pooled worker stays with its connection, so hand it back when other connections are waiting.
+        if (runner != null && runner.getQueued() > 0) res.closeConnection(true);
+
+        String label = Metrics.getLabel("route", route);
+        Metrics.record("proxy_request", label, start);
+        Metrics.increment("proxy_responses", label + "," + Metrics.getLabel("status", String.valueOf(res.getStatus().getRequestStatus())));
+        return res;
+    }
+
+    @Override
+    protected boolean useGzipWhenAccepted(Response r) {
+        String type = r.getMimeType();
+        return r.getHeader("content-encoding") == null
+                && (super.useGzipWhenAccepted(r) || type != null && type.contains("xml") && !type.contains("gzip"));
+    }
+
+    private Response getResponse(String url, String encoding) {
+        HttpClient.Content c = HttpClient.getContent(url, "Accept-Encoding", encoding);
+        if (c == null) return newFixedLengthResponse(Response.Status.NOT_FOUND, "text/plain", "HTTP/1.1 404 NOT FOUND");
+
+        Response res = c.length != -1
+                ? newFixedLengthResponse(Response.Status.OK, c.type, c.response, c.length)
+                : newChunkedResponse(Response.Status.OK, c.type, c.response);
+        if (c.encoding != null) res.addHeader("Content-Encoding", c.encoding);
+        return res;
+    }
+
+    private Response getSession(Sessions.Session s, String path, String query) {
+        if (path.endsWith(".ts")) {
+            String url = s.url + path + "?" + (s.query != null ? s.query : query);
+            String hedge = isAuto() ? s.getAlternate(path) : null;
+            Segment seg = fetcher.get(url, hedge != null ? hedge : url, SegmentFetcher.getDeadline(s.duration));
+            if (seg == null) return newFixedLengthResponse(Response.Status.NOT_FOUND, "text/plain", "HTTP/1.1 404 NOT FOUND");
+            seg.watch(s);
+            if (s.start()) Metrics.record("time_to_first_segment", Metrics.getLabel("warm", String.valueOf(s.warm)), s.tuned);
+            return getSegment(seg);
+        }
+
+        String from = s.url;
+        String to = s.getTarget();
+        if (!to.equals(from) && move(s, from, s.server, to))
+            Metrics.increment("quality_switches", Metrics.getLabel("quality", String.valueOf(s.quality)));
+        if (isAuto()) resolve(s);
+        return getChunks(s, s.url + path + "?" + (s.query != null ? s.query : query));
+    }
+
+    private boolean failover(Sessions.Session s) {
+        if (!isAuto()) return false;
+
+        String from = s.server;
+        servers.fail(from);
+        String to = servers.getBest(from);
+        if (to.equals(from)) return false;
+
+        if (!move(s, s.url, to, s.url.replace("://" + from + ".", "://" + to + "."))) {
+            servers.fail(to);
+            return false;
+        }
+        Metrics.increment("server_failovers", Metrics.getLabel("server", to));
+        return true;
+    }
+
+    private boolean move(Sessions.Session s, String from, String server, String url) {
+        String chunks = getChunksPath(s, url);
+        if (chunks == null) return false;
+
+        int i = chunks.indexOf('?');
+        return s.move(from, server, url, i != -1 ? chunks.substring(i + 1) : null);
+    }
+
+    private void resolve(final Sessions.Session s) {
+        final String to = servers.getBest(s.server);
+        final String url = s.claimAlternate(to);
+        if (url == null) return;
+
+        HEDGES.execute(new Runnable() {
+            @Override
+            public void run() {
+                String chunks = getChunksPath(s, url);
+                int i = chunks != null ? chunks.indexOf('?') : -1;
+                if (chunks == null) servers.fail(to);
+                else if (i != -1) s.setAlternate(url, chunks.substring(i + 1));
+            }
+        });
+    }
+
+    private static String getChunksPath(Sessions.Session s, String url) {
+        String text = HttpClient.getText(url + "/playlist.m3u8?wmsAuthSign=" + s.auth.get());
+        return text != null ? Servers.getFirst(text) : null;
+    }
+
+    private boolean isAuto() {
+        return Servers.AUTO.equals(server);
+    }
+
+    private Response getSegment(Segment s) {
+        long length = s.getLength();
+        return length != -1
+                ? newFixedLengthResponse(Response.Status.OK, s.getType(), s.newStream(), length)
+                : newChunkedResponse(Response.Status.OK, s.getType(), s.newStream());
+    }
+
+    private Response getTimeshift(String path) {
+        int i = path.indexOf('/');
+        Ring r = i != -1 ? timeshift.peek(path.substring(0, i)) : null;
+        Ring.Entry e = null;
+        if (r != null) try {
+            e = r.get(Long.parseLong(path.substring(i + 1)));
+        } catch (NumberFormatException ex) {
+            ex.printStackTrace();
+        }
+        if (e == null) return newFixedLengthResponse(Response.Status.NOT_FOUND, "text/plain", "HTTP/1.1 404 NOT FOUND");
+        return newFixedLengthResponse(Response.Status.OK, "video/mp2t", r.newStream(e), e.length);
+    }
+
+    private Response getRecord(Map<String, List<String>> params) {
+        List<String> id = params.get("delete");
+        if (id != null) return recorder.delete(id.get(0))
+                ? newFixedLengthResponse(Response.Status.OK, "text/plain", id.get(0))
+                : newFixedLengthResponse(Response.Status.NOT_FOUND, "text/plain", "HTTP/1.1 404 NOT FOUND");
+
+        List<String> ch = params.get("ch");
+        if (ch == null) return newFixedLengthResponse(Response.Status.BAD_REQUEST, "text/plain", "HTTP/1.1 400 BAD REQUEST");
+        try {
+            long now = System.currentTimeMillis();
+            long start = params.containsKey("start") ? Long.parseLong(params.get("start").get(0)) : now;
+            long minutes = params.containsKey("minutes") ? Long.parseLong(params.get("minutes").get(0)) : 180;
+            String name = params.containsKey("name") ? params.get("name").get(0) : "Channel " + ch.get(0);
+            Recorder.Recording r = recorder.schedule(Integer.parseInt(ch.get(0)), name, start, start + minutes * 60000);
+            return newFixedLengthResponse(Response.Status.OK, "text/plain", r.id);
+        } catch (NumberFormatException e) {
+            return newFixedLengthResponse(Response.Status.BAD_REQUEST, "text/plain", "HTTP/1.1 400 BAD REQUEST");
+        }
+    }
+
+    private Response getRecording(String path) {
+        int i = path.indexOf('/');
+        Recorder.Recording r = recorder.get(i != -1 ? path.substring(0, i) : path.replace(".m3u8", ""));
+        if (r != null && i == -1 && path.endsWith(".m3u8"))
+            return newFixedLengthResponse(Response.Status.OK, "application/vnd.apple.mpegurl", r.render());
+
+        File f = r != null && path.endsWith(".ts") ? r.getFile(path.substring(i + 1, path.length() - 3)) : null;
+        if (f != null) try {
+            FileInputStream in = new FileInputStream(f);
+            return newFixedLengthResponse(Response.Status.OK, "video/mp2t", in, in.getChannel().size());
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return newFixedLengthResponse(Response.Status.NOT_FOUND, "text/plain", "HTTP/1.1 404 NOT FOUND");
+    }
+
+    private Response getMetrics() {
+        StringBuilder out = new StringBuilder();
+        SegmentCache cache = fetcher.getCache();
+        Metrics.gauge(out, "sessions_active", sessions.size());
+        Metrics.gauge(out, "accounts", accounts.size());
+        Metrics.gauge(out, "cache_hits", cache.getHits());
+        Metrics.gauge(out, "cache_misses", cache.getMisses());
+        Metrics.gauge(out, "cache_evictions", cache.getEvictions());
+        Metrics.gauge(out, "cache_segments", cache.getCount());
+        Metrics.gauge(out, "cache_bytes", cache.getBytes());
+        Metrics.gauge(out, "upstream_transfers", Transfer.getCount());
+        Metrics.gauge(out, "upstream_bytes", Transfer.getBytes());
+        Metrics.gauge(out, "upstream_transfer_us", Transfer.getNanos() / 1000);
+        if (runner != null) {
+            Metrics.gauge(out, "workers_active", runner.getActive());
+            Metrics.gauge(out, "workers_queued", runner.getQueued());
+            Metrics.gauge(out, "workers_rejected", runner.getRejected());
+        }
+        Metrics.render(out);
+        return newFixedLengthResponse(Response.Status.OK, "text/plain; version=0.0.4", out.toString());
+    }
+
+    private Response getEpg() {
+        File f = epg.get();
+        int hours = epgHours;
+        Set<String> ids = hours > 0 ? channels.getIds() : null;
+        if (f != null && ids != null && !ids.isEmpty()) {
+            File filtered = filter.get(f, ids, hours);
+            if (filtered != null) f = filtered;
+        }
+        if (f != null) try {
+            FileInputStream in = new FileInputStream(f);
+            return newFixedLengthResponse(Response.Status.OK, epg.getType(), in, in.getChannel().size());
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return newFixedLengthResponse(Response.Status.NOT_FOUND, "text/plain", "HTTP/1.1 404 NOT FOUND");
+    }
+
+    private Response getChunks(Sessions.Session s, String url) {
+        String text = s.warm && !s.isStarted() ? warmer.getChunks(url) : null;
+        if (text == null) text = HttpClient.getText(url);
+        if (text == null) return newFixedLengthResponse(Response.Status.NOT_FOUND, "text/plain", "HTTP/1.1 404 NOT FOUND");
+
+        MediaPlaylist p = MediaPlaylist.parse(text);
+        s.duration = p.getDuration();
+        prefetcher.submit(s, url.substring(0, url.lastIndexOf('/', url.indexOf('?')) + 1), p);
+        return newFixedLengthResponse(Response.Status.OK, "application/vnd.apple.mpegurl", text);
+    }
+
+    private Response getVariant(Sessions.Session s, String stream, String url) {
+        String text = fastStart ? warmer.getVariant(stream) : null;
+        s.warm = text != null;
+        if (text == null) text = HttpClient.getText(url);
+        if (text == null) return newFixedLengthResponse(Response.Status.NOT_FOUND, "text/plain", "HTTP/1.1 404 NOT FOUND");
+
+        StringBuilder out = new StringBuilder();
+        for (String line : text.split("\\r?\\n")) {
+            if (!line.isEmpty() && !line.startsWith("#")) out.append(s.getPath());
+            out.append(line).append('\n');
+        }
+        return newFixedLengthResponse(Response.Status.OK, "application/vnd.apple.mpegurl", out.toString());
+    }
+
+    private void warm(final String server, final String channel) {
+        warmer.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (String ch : warmer.tune(channel, channels.getCount())) {
+                    Auth auth = accounts.assign(sessions, ch);
+                    if (auth != null && auth.peek() != null) warmer.warm(Servers.getUrl(server, service, ch, quality), auth);
+                }
+            }
+        });
+    }
+
+    private Response getRendered(IHTTPSession session, Rendered r) {
+        String accept = session.getHeaders().get("accept-encoding");
+        boolean gzip = accept != null && accept.contains("gzip") && r.gzip != null && r.gzip.length < r.bytes.length;
+        byte[] bytes = gzip ? r.gzip : r.bytes;
+        String etag = gzip ? r.gzipEtag : r.etag;
+
+        boolean match = etag.equals(session.getHeaders().get("if-none-match"));
+        Response res = match
+                ? newFixedLengthResponse(Response.Status.NOT_MODIFIED, r.type, "")
+                : newFixedLengthResponse(Response.Status.OK, r.type, new ByteArrayInputStream(bytes), bytes.length);
+        if (gzip && !match) res.addHeader("Content-Encoding", "gzip");
+        res.addHeader("Vary", "Accept-Encoding");
+        res.addHeader("ETag", etag);
+        return res;
+    }
+}
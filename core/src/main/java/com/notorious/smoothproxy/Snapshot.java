@@ -0,0 +1,196 @@
+/*
+    MIT License
+
+    Copyright (c) 2017 mr-notorious
+
+    Permission is hereby granted, free of charge, to any person obtaining a copy
+    of this software and associated documentation files (the "Software"), to deal
+    in the Software without restriction, including without limitation the rights
+    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+    copies of the Software, and to permit persons to whom the Software is
+    furnished to do so, subject to the following conditions:
+
+    The above copyright notice and this permission notice shall be included in all
+    copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+    SOFTWARE.
+ */
+
+package com.notorious.smoothproxy;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+final class Snapshot implements Runnable {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final long DELAY = 2000;
+    private static final ScheduledThreadPoolExecutor EXECUTOR = new ScheduledThreadPoolExecutor(1);
+    private final File file;
+    private final Accounts accounts;
+    private final ChannelMap channels;
+    private final Sports sports;
+    private JsonObject tokens = new JsonObject();
+    private boolean loaded;
+    private final AtomicBoolean pending = new AtomicBoolean();
+
+    Snapshot(File dir, Accounts accounts, ChannelMap channels, Sports sports) {
+        file = new File(dir, "snapshot.json");
+        this.accounts = accounts;
+        this.channels = channels;
+        this.sports = sports;
+    }
+
+    void load() {
+        JsonObject jO;
+        synchronized (this) {
+            if (loaded) return;
+            loaded = true;
+            jO = read();
+            if (jO == null) return;
+            if (jO.has("tokens")) tokens = jO.getAsJsonObject("tokens");
+        }
+
+        try {
+            if (jO.has("channels")) {
+                JsonObject c = jO.getAsJsonObject("channels");
+                channels.restore(c.getAsJsonObject("map"), c.get("feed").getAsBoolean(), c.get("checked").getAsLong());
+            }
+            if (jO.has("sports")) {
+                JsonObject s = jO.getAsJsonObject("sports");
+                List<Sports.Event> events = new ArrayList<>();
+                for (JsonElement e : s.getAsJsonArray("events")) events.add(readEvent(e.getAsJsonObject()));
+                sports.restore(events, s.get("day").getAsLong(), s.get("checked").getAsLong());
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    boolean restore(Auth auth) {
+        load();
+        JsonObject t;
+        synchronized (this) {
+            t = tokens.has(auth.getKey()) ? tokens.getAsJsonObject(auth.getKey()) : null;
+        }
+        return t != null && auth.restore(t.get("hash").getAsString(), t.get("time").getAsLong());
+    }
+
+    void schedule() {
+        if (pending.compareAndSet(false, true)) EXECUTOR.schedule(this, DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    private JsonObject read() {
+        if (!file.isFile()) return null;
+        try {
+            InputStreamReader in = new InputStreamReader(new FileInputStream(file), UTF_8);
+            try {
+                return new JsonParser().parse(in).getAsJsonObject();
+            } finally {
+                in.close();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    @Override
+    public void run() {
+        pending.set(false);
+        try {
+            save();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void save() throws IOException {
+        JsonObject jO = new JsonObject();
+
+        JsonObject t = new JsonObject();
+        for (int i = 0; i < accounts.size(); i++) {
+            Auth a = accounts.get(i);
+            if (a.getHash() == null) continue;
+            JsonObject token = new JsonObject();
+            token.addProperty("hash", a.getHash());
+            token.addProperty("time", a.getTime());
+            t.add(a.getKey(), token);
+        }
+        jO.add("tokens", t);
+
+        JsonObject map = channels.getMap();
+        if (map != null) {
+            JsonObject c = new JsonObject();
+            c.add("map", map);
+            c.addProperty("feed", channels.isFeed());
+            c.addProperty("checked", channels.getChecked());
+            jO.add("channels", c);
+        }
+
+        List<Sports.Event> events = sports.peekEvents();
+        if (events != null) {
+            JsonObject s = new JsonObject();
+            JsonArray array = new JsonArray();
+            for (Sports.Event e : events) array.add(writeEvent(e));
+            s.add("events", array);
+            s.addProperty("day", sports.getDay());
+            s.addProperty("checked", sports.getChecked());
+            jO.add("sports", s);
+        }
+
+        File tmp = new File(file.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(tmp);
+        try {
+            Writer w = new OutputStreamWriter(out, UTF_8);
+            w.write(jO.toString());
+            w.flush();
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file)) throw new IOException("Rename failed: " + tmp);
+
+        synchronized (this) {
+            tokens = t;
+        }
+    }
+
+    private static JsonObject writeEvent(Sports.Event e) {
+        JsonObject jO = new JsonObject();
+        jO.addProperty("num", e.num);
+        jO.addProperty("name", e.name);
+        jO.addProperty("time", e.time);
+        jO.addProperty("runtime", e.runtime);
+        jO.addProperty("group", e.group);
+        jO.addProperty("quality", e.quality);
+        jO.addProperty("language", e.language);
+        return jO;
+    }
+
+    private static Sports.Event readEvent(JsonObject jO) {
+        return new Sports.Event(jO.get("num").getAsInt(), jO.get("name").getAsString(), jO.get("time").getAsLong(),
+                jO.get("runtime").getAsInt(), jO.get("group").getAsString(), jO.get("quality").getAsString(), jO.get("language").getAsString());
+    }
+}
@@ -0,0 +1,361 @@
+/*
+    MIT License
+
+    Copyright (c) 2017 mr-notorious
+
+    Permission is hereby granted, free of charge, to any person obtaining a copy
+    of this software and associated documentation files (the "Software"), to deal
+    in the Software without restriction, including without limitation the rights
+    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+    copies of the Software, and to permit persons to whom the Software is
+    furnished to do so, subject to the following conditions:
+
+    The above copyright notice and this permission notice shall be included in all
+    copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+    SOFTWARE.
+ */
+
+package com.notorious.smoothproxy;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+final class Sports {
+    private static final long REFRESH = 900000;
+    private static final long RETRY = 60000;
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor();
+    private static final TimeZone NY_TZ = TimeZone.getTimeZone("America/New_York");
+    private static final ThreadLocal<Calendar> NY_CAL = new ThreadLocal<Calendar>() {
+        @Override
+        protected Calendar initialValue() {
+            return new GregorianCalendar(NY_TZ, Locale.US);
+        }
+    };
+    private final String host;
+    private final int port;
+    private final Object loading = new Object();
+    private List<Event> events;
+    private Rendered playlist;
+    private String pattern;
+    private long day;
+    private long checked;
+    private long next;
+    private long backoff = RETRY;
+    private boolean pending;
+    private volatile Runnable listener;
+
+    Sports(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    Rendered getPlaylist(String pattern) {
+        refresh();
+        synchronized (this) {
+            if (playlist == null || !pattern.equals(this.pattern)) {
+                playlist = new Rendered(render(pattern), "application/vnd.apple.mpegurl");
+                this.pattern = pattern;
+            }
+            return playlist;
+        }
+    }
+
+    List<Event> getEvents() {
+        refresh();
+        return peekEvents();
+    }
+
+    void setListener(Runnable listener) {
+        this.listener = listener;
+    }
+
+    private void notifyListener() {
+        Runnable l = listener;
+        if (l != null) l.run();
+    }
+
+    synchronized List<Event> peekEvents() {
+        return events;
+    }
+
+    synchronized long getDay() {
+        return day;
+    }
+
+    synchronized long getChecked() {
+        return checked;
+    }
+
+    synchronized void restore(List<Event> e, long day, long checked) {
+        if (events != null) return;
+        events = e;
+        this.day = day;
+        this.checked = checked;
+        next = checked + REFRESH;
+        playlist = null;
+    }
+
+    private void refresh() {
+        if (isCurrent()) {
+            if (isDue()) schedule();
+            return;
+        }
+        boolean loaded = false;
+        synchronized (loading) {
+            if (!isCurrent()) loaded = update();
+        }
+        if (loaded) notifyListener();
+    }
+
+    private synchronized boolean isCurrent() {
+        return events != null && day == getMidnight(System.currentTimeMillis(), 0);
+    }
+
+    private synchronized boolean isDue() {
+        return next < System.currentTimeMillis();
+    }
+
+    private synchronized void schedule() {
+        if (pending) return;
+        pending = true;
+        EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                boolean loaded = false;
+                try {
+                    synchronized (loading) {
+                        if (isDue()) loaded = update();
+                    }
+                } finally {
+                    synchronized (Sports.this) {
+                        pending = false;
+                    }
+                }
+                if (loaded) notifyListener();
+            }
+        });
+    }
+
+    private boolean update() {
+        long now = System.currentTimeMillis();
+        long start = getMidnight(now, 0);
+        List<Event> e = load(start, getMidnight(now, 1));
+
+        synchronized (this) {
+            next = now + (e != null ? REFRESH : backoff);
+            backoff = e != null ? RETRY : Math.min(backoff * 2, REFRESH);
+            if (e != null) checked = now;
+            else if (events == null || day != start) e = Collections.emptyList();
+            else return false;
+
+            boolean loaded = checked == now;
+            events = e;
+            day = start;
+            playlist = null;
+            return loaded;
+        }
+    }
+
+    private static long getMidnight(long now, int days) {
+        Calendar c = new GregorianCalendar();
+        c.setTimeInMillis(now);
+        c.set(Calendar.HOUR_OF_DAY, 0);
+        c.set(Calendar.MINUTE, 0);
+        c.set(Calendar.SECOND, 0);
+        c.set(Calendar.MILLISECOND, 0);
+        c.add(Calendar.DAY_OF_MONTH, days);
+        return c.getTimeInMillis();
+    }
+
+    private String render(String pattern) {
+        StringBuilder out = new StringBuilder("#EXTM3U\n");
+        SimpleDateFormat sdf = new SimpleDateFormat(pattern, Locale.US);
+
+        int nonce = 0;
+        for (Event e : events) {
+            out.append("#EXTINF:-1 group-title=\"").append(e.group)
+                    .append("\" tvg-id=\"").append(e.num)
+                    .append("\" tvg-logo=\"https://guide.smoothstreams.tv/assets/images/events/").append(e.num)
+                    .append(".png\",").append(e.getEvent(sdf))
+                    .append("\nhttp://").append(host).append(':').append(port).append("/playlist.m3u8?ch=");
+            pad(out, e.num).append("&nonce=");
+            pad(out, ++nonce).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static StringBuilder pad(StringBuilder out, int n) {
+        if (n >= 0 && n < 10) out.append('0');
+        return out.append(n);
+    }
+
+    private static List<Event> load(final long start, final long end) {
+        return HttpClient.getJson("https://guide.smoothstreams.tv/feed.json", new HttpClient.JsonHandler<List<Event>>() {
+            @Override
+            public List<Event> read(JsonReader reader) throws IOException {
+                return Sports.read(reader, start, end);
+            }
+        });
+    }
+
+    static List<Event> read(JsonReader reader, long start, long end) throws IOException {
+        List<Event> events = new ArrayList<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            reader.nextName();
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("items") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        Event e = readEvent(reader, start, end);
+                        if (e != null) events.add(e);
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        reader.endObject();
+
+        Collections.sort(events);
+        return events;
+    }
+
+    private static Event readEvent(JsonReader reader, long start, long end) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return null;
+        }
+
+        long time = Long.MIN_VALUE;
+        int runtime = 0;
+        int num = 0;
+        String group = "";
+        String quality = "";
+        String language = "";
+        String name = "";
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+            } else if (key.equals("time")) {
+                time = getTime(reader.nextString());
+            } else if (key.equals("runtime")) {
+                runtime = getRuntime(reader.nextString());
+            } else if (key.equals("channel")) {
+                num = reader.nextInt();
+            } else if (key.equals("category")) {
+                group = reader.nextString();
+            } else if (key.equals("quality")) {
+                quality = reader.nextString();
+            } else if (key.equals("language")) {
+                language = reader.nextString();
+            } else if (key.equals("name")) {
+                name = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return time >= start && time < end
+                ? new Event(num, HttpClient.decode(name), time, runtime, !group.isEmpty() ? group : "~UNKNOWN~", quality, language)
+                : null;
+    }
+
+    static long getTime(String text) {
+        if (text.length() < 19) return Long.MIN_VALUE;
+        try {
+            Calendar c = NY_CAL.get();
+            c.clear();
+            c.set(getInt(text, 0, 4), getInt(text, 5, 7) - 1, getInt(text, 8, 10), getInt(text, 11, 13), getInt(text, 14, 16), getInt(text, 17, 19));
+            return c.getTimeInMillis();
+        } catch (NumberFormatException e) {
+            e.printStackTrace();
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private static int getRuntime(String text) {
+        try {
+            return !text.isEmpty() && text.length() < 6 ? getInt(text, 0, text.length()) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static int getInt(String text, int from, int to) {
+        int n = 0;
+        for (int i = from; i < to; i++) {
+            int d = text.charAt(i) - '0';
+            if (d < 0 || d > 9) throw new NumberFormatException(text);
+            n = n * 10 + d;
+        }
+        return n;
+    }
+
+    static final class Event implements Comparable<Event> {
+        final int num;
+        final String name;
+        final long time;
+        final int runtime;
+        final String group;
+        final String quality;
+        final String language;
+
+        Event(int num, String name, long time, int runtime, String group, String quality, String language) {
+            this.num = num;
+            this.name = name;
+            this.time = time;
+            this.runtime = runtime;
+            this.group = group;
+            this.quality = quality;
+            this.language = language;
+        }
+
+        String getEvent(SimpleDateFormat sdf) {
+            boolean q = !quality.isEmpty();
+            boolean l = !language.isEmpty();
+            return sdf.format(new Date(time)) + " | " + name.replace(",", "") + " "
+                    + (q || l ? "(" + (q ? quality : "") + (q && l ? "/" : "") + (l ? language : "") + ")" : "").toUpperCase();
+        }
+
+        @Override
+        public int compareTo(Event e) {
+            int c = group.compareTo(e.group);
+            if (c == 0) c = time < e.time ? -1 : time > e.time ? 1 : 0;
+            if (c == 0) c = name.compareTo(e.name);
+            if (c == 0) c = num - e.num;
+            return c;
+        }
+    }
+}
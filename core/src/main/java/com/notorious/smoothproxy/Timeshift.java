@@ -0,0 +1,130 @@
+/*
+    MIT License
+
+    Copyright (c) 2017 mr-notorious
+
+    Permission is hereby granted, free of charge, to any person obtaining a copy
+    of this software and associated documentation files (the "Software"), to deal
+    in the Software without restriction, including without limitation the rights
+    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+    copies of the Software, and to permit persons to whom the Software is
+    furnished to do so, subject to the following conditions:
+
+    The above copyright notice and this permission notice shall be included in all
+    copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+    SOFTWARE.
+ */
+
+package com.notorious.smoothproxy;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+final class Timeshift {
+    private static final long IDLE = 1800000;
+    private static final int CHANNELS = 4;
+    private static final int START = 3;
+    private final ConcurrentHashMap<String, Channel> channels = new ConcurrentHashMap<>();
+    private final File dir;
+    private final SegmentFetcher fetcher;
+    private final Follower.Source source;
+    private volatile int capacity;
+
+    Timeshift(File dir, SegmentFetcher fetcher, Follower.Source source) {
+        this.dir = dir;
+        this.fetcher = fetcher;
+        this.source = source;
+    }
+
+    void setCapacity(int capacity) {
+        this.capacity = capacity;
+        if (capacity <= 0) clear();
+    }
+
+    boolean isEnabled() {
+        return capacity > 0;
+    }
+
+    Ring get(String channel) {
+        Channel f = channels.get(channel);
+        if (f == null && isEnabled() && channel.matches("\\d+")) synchronized (this) {
+            f = channels.get(channel);
+            if (f == null) {
+                if (channels.size() >= CHANNELS) evict();
+                try {
+                    if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create " + dir);
+                    f = new Channel(channel, new Ring(new File(dir, channel + ".ring"), capacity));
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    return null;
+                }
+                channels.put(channel, f);
+                f.start(0);
+            }
+        }
+        if (f == null) return null;
+        f.time = System.currentTimeMillis();
+        return f.ring;
+    }
+
+    Ring peek(String channel) {
+        Channel f = channels.get(channel);
+        return f != null ? f.ring : null;
+    }
+
+    synchronized void clear() {
+        for (Channel f : channels.values()) f.stop();
+        channels.clear();
+    }
+
+    private void evict() {
+        Channel oldest = null;
+        for (Channel f : channels.values()) if (oldest == null || f.time < oldest.time) oldest = f;
+        if (oldest != null && channels.remove(oldest.channel, oldest)) oldest.stop();
+    }
+
+    private final class Channel extends Follower {
+        final Ring ring;
+        volatile long time = System.currentTimeMillis();
+
+        Channel(String channel, Ring ring) {
+            super(channel, source, START);
+            this.ring = ring;
+        }
+
+        @Override
+        boolean isFinished() {
+            return time + IDLE < System.currentTimeMillis() && channels.remove(channel, this);
+        }
+
+        @Override
+        void accept(List<Chunk> chunks) {
+            boolean gap = false;
+            for (Chunk c : chunks) {
+                if (isStopped()) return;
+                gap |= c.gap;
+                Segment s = fetcher.get(c.url);
+                if (s == null) {
+                    gap = true;
+                    continue;
+                }
+                if (s.awaitComplete() && ring.append(s, c.duration, gap)) gap = false;
+                s.release();
+            }
+        }
+
+        @Override
+        void finish() {
+            ring.close();
+        }
+    }
+}
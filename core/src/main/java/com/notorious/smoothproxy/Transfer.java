@@ -0,0 +1,96 @@
+/*
+    MIT License
+
+    Copyright (c) 2017 mr-notorious
+
+    Permission is hereby granted, free of charge, to any person obtaining a copy
+    of this software and associated documentation files (the "Software"), to deal
+    in the Software without restriction, including without limitation the rights
+    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+    copies of the Software, and to permit persons to whom the Software is
+    furnished to do so, subject to the following conditions:
+
+    The above copyright notice and this permission notice shall be included in all
+    copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+    SOFTWARE.
+ */
+
+package com.notorious.smoothproxy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Response;
+
+final class Transfer extends InputStream {
+    private static final AtomicLong COUNT = new AtomicLong();
+    private static final AtomicLong BYTES = new AtomicLong();
+    private static final AtomicLong NANOS = new AtomicLong();
+    private final Response response;
+    private final InputStream in;
+    private final long start = System.nanoTime();
+    private long bytes;
+    private boolean closed;
+
+    Transfer(Response response) {
+        this.response = response;
+        in = response.body().byteStream();
+    }
+
+    static long getCount() {
+        return COUNT.get();
+    }
+
+    static long getBytes() {
+        return BYTES.get();
+    }
+
+    static long getNanos() {
+        return NANOS.get();
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (closed) return -1;
+        int n;
+        try {
+            n = in.read(b, off, len);
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+        if (n == -1) close();
+        else bytes += n;
+        return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return closed ? 0 : in.available();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        response.close();
+
+        COUNT.incrementAndGet();
+        BYTES.addAndGet(bytes);
+        NANOS.addAndGet(System.nanoTime() - start);
+    }
+}
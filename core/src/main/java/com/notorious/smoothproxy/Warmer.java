@@ -0,0 +1,168 @@
+/*
+    MIT License
+
+    Copyright (c) 2017 mr-notorious
+
+    Permission is hereby granted, free of charge, to any person obtaining a copy
+    of this software and associated documentation files (the "Software"), to deal
+    in the Software without restriction, including without limitation the rights
+    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+    copies of the Software, and to permit persons to whom the Software is
+    furnished to do so, subject to the following conditions:
+
+    The above copyright notice and this permission notice shall be included in all
+    copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+    SOFTWARE.
+ */
+
+package com.notorious.smoothproxy;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+final class Warmer {
+    private static final long FRESH = 30000;
+    private static final long LINGER = 120000;
+    private static final long REFRESH = 5000;
+    private static final int RECENT = 3;
+    private static final ScheduledThreadPoolExecutor EXECUTOR = new ScheduledThreadPoolExecutor(1);
+    private final ConcurrentHashMap<String, Warm> streams = new ConcurrentHashMap<>();
+    private final LinkedList<String> recent = new LinkedList<>();
+    private ScheduledFuture<?> next;
+
+    synchronized List<String> tune(String channel, int count) {
+        recent.remove(channel);
+        recent.addFirst(channel);
+        if (recent.size() > RECENT + 1) recent.removeLast();
+
+        List<String> likely = new ArrayList<>();
+        int n = Integer.parseInt(channel);
+        if (n > 1) likely.add(pad(n - 1));
+        if (count == 0 || n < count) likely.add(pad(n + 1));
+        for (String ch : recent) if (!ch.equals(channel) && !likely.contains(ch)) likely.add(ch);
+        return likely;
+    }
+
+    void execute(Runnable task) {
+        EXECUTOR.execute(task);
+    }
+
+    void warm(String url, Auth auth) {
+        Warm w = streams.get(url);
+        if (w != null) {
+            w.auth = auth;
+            w.time = System.currentTimeMillis();
+            return;
+        }
+
+        final Warm n = new Warm(url, auth);
+        if (streams.putIfAbsent(url, n) != null) return;
+        EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                n.refresh();
+            }
+        });
+        schedule();
+    }
+
+    String getVariant(String url) {
+        Warm w = streams.get(url);
+        String text = w != null && w.checked + FRESH > System.currentTimeMillis() ? w.variant : null;
+        if (text != null) w.time = System.currentTimeMillis();
+        return text;
+    }
+
+    String getChunks(String url) {
+        String key = SegmentFetcher.getKey(url);
+        Warm w = streams.get(key.substring(0, key.lastIndexOf('/')));
+        return w != null && key.equals(w.key) && w.checked + REFRESH * 2 > System.currentTimeMillis() ? w.chunks : null;
+    }
+
+    void clear() {
+        streams.clear();
+        synchronized (this) {
+            if (next != null) next.cancel(false);
+            next = null;
+        }
+    }
+
+    private synchronized void schedule() {
+        if (next != null) return;
+        next = EXECUTOR.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                refresh();
+            }
+        }, REFRESH, REFRESH, TimeUnit.MILLISECONDS);
+    }
+
+    private void refresh() {
+        long now = System.currentTimeMillis();
+        for (Iterator<Warm> it = streams.values().iterator(); it.hasNext(); ) {
+            Warm w = it.next();
+            if (w.time + LINGER < now) it.remove();
+            else w.refresh();
+        }
+        synchronized (this) {
+            if (streams.isEmpty() && next != null) {
+                next.cancel(false);
+                next = null;
+            }
+        }
+    }
+
+    private static String pad(int n) {
+        return n < 10 ? "0" + n : String.valueOf(n);
+    }
+
+    private static final class Warm {
+        final String url;
+        volatile Auth auth;
+        volatile long time = System.currentTimeMillis();
+        volatile long checked;
+        volatile String variant;
+        volatile String key;
+        volatile String chunks;
+
+        Warm(String url, Auth auth) {
+            this.url = url;
+            this.auth = auth;
+        }
+
+        void refresh() {
+            String v = variant;
+            String first = v != null ? Servers.getFirst(v) : null;
+            if (first == null) {
+                String hash = auth.peek();
+                if (hash == null) return;
+                v = HttpClient.getText(url + "/playlist.m3u8?wmsAuthSign=" + hash);
+                first = v != null ? Servers.getFirst(v) : null;
+                if (first == null) return;
+            }
+
+            String c = HttpClient.getText(url + "/" + first);
+            if (c == null) {
+                variant = null;
+                return;
+            }
+            key = SegmentFetcher.getKey(url + "/" + first);
+            variant = v;
+            chunks = c;
+            checked = System.currentTimeMillis();
+        }
+    }
+}
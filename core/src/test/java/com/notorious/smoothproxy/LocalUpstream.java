@@ -0,0 +1,63 @@
+/*
+    MIT License
+
+    Copyright (c) 2017 mr-notorious
+
+    Permission is hereby granted, free of charge, to any person obtaining a copy
+    of this software and associated documentation files (the "Software"), to deal
+    in the Software without restriction, including without limitation the rights
+    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+    copies of the Software, and to permit persons to whom the Software is
+    furnished to do so, subject to the following conditions:
+
+    The above copyright notice and this permission notice shall be included in all
+    copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+    SOFTWARE.
+ */
+
+package com.notorious.smoothproxy;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import fi.iki.elonen.NanoHTTPD;
+
+final class LocalUpstream extends NanoHTTPD {
+    final AtomicLong requests = new AtomicLong();
+    final byte[] segment;
+    private final long delay;
+
+    LocalUpstream(int size, long delay) throws IOException {
+        super("127.0.0.1", 0);
+        segment = new byte[size];
+        new Random(7).nextBytes(segment);
+        this.delay = delay;
+        start(NanoHTTPD.SOCKET_READ_TIMEOUT, true);
+    }
+
+    String getUrl(String path) {
+        return "http://127.0.0.1:" + getListeningPort() + path;
+    }
+
+    @Override
+    public Response serve(IHTTPSession session) {
+        requests.incrementAndGet();
+        if (!session.getUri().endsWith(".ts")) return newFixedLengthResponse(Response.Status.NOT_FOUND, MIME_PLAINTEXT, "Not Found");
+
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return newFixedLengthResponse(Response.Status.OK, "video/mp2t", new ByteArrayInputStream(segment), segment.length);
+    }
+}
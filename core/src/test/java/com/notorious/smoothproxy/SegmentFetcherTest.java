@@ -0,0 +1,95 @@
+/*
+    MIT License
+
+    Copyright (c) 2017 mr-notorious
+
+    Permission is hereby granted, free of charge, to any person obtaining a copy
+    of this software and associated documentation files (the "Software"), to deal
+    in the Software without restriction, including without limitation the rights
+    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+    copies of the Software, and to permit persons to whom the Software is
+    furnished to do so, subject to the following conditions:
+
+    The above copyright notice and this permission notice shall be included in all
+    copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+    SOFTWARE.
+ */
+
+package com.notorious.smoothproxy;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class SegmentFetcherTest {
+    private static final int READERS = 8;
+    private LocalUpstream upstream;
+    private ExecutorService readers;
+
+    @Before
+    public void setUp() throws Exception {
+        upstream = new LocalUpstream(512 * 1024, 200);
+        readers = Executors.newFixedThreadPool(READERS);
+    }
+
+    @After
+    public void tearDown() {
+        readers.shutdownNow();
+        upstream.stop();
+    }
+
+    @Test
+    public void concurrentReadersShareOneUpstreamFetch() throws Exception {
+        final SegmentFetcher fetcher = new SegmentFetcher(8 * 1024 * 1024, 60000);
+        final String url = upstream.getUrl("/ch01q1.stream/l_1.ts?nimblesessionid=1");
+        final CountDownLatch gate = new CountDownLatch(1);
+
+        List<Future<byte[]>> results = new ArrayList<>();
+        for (int i = 0; i < READERS; i++) {
+            results.add(readers.submit(new Callable<byte[]>() {
+                @Override
+                public byte[] call() throws Exception {
+                    gate.await();
+                    return read(fetcher.get(url));
+                }
+            }));
+        }
+        gate.countDown();
+
+        for (Future<byte[]> f : results) assertArrayEquals(upstream.segment, f.get(10, TimeUnit.SECONDS));
+        assertEquals(1, upstream.requests.get());
+    }
+
+    private static byte[] read(Segment s) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        InputStream in = s.newStream();
+        try {
+            byte[] b = new byte[16384];
+            for (int n; (n = in.read(b)) != -1; ) out.write(b, 0, n);
+        } finally {
+            in.close();
+        }
+        return out.toByteArray();
+    }
+}
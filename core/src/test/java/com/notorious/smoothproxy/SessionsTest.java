@@ -0,0 +1,53 @@
+/*
+    MIT License
+
+    Copyright (c) 2017 mr-notorious
+
+    Permission is hereby granted, free of charge, to any person obtaining a copy
+    of this software and associated documentation files (the "Software"), to deal
+    in the Software without restriction, including without limitation the rights
+    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+    copies of the Software, and to permit persons to whom the Software is
+    furnished to do so, subject to the following conditions:
+
+    The above copyright notice and this permission notice shall be included in all
+    copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+    SOFTWARE.
+ */
+
+package com.notorious.smoothproxy;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class SessionsTest {
+    private static final long SLOW = 9000000000L;
+
+    @Test
+    public void slowSegmentsStepDownTheVariant() {
+        Sessions.Session s = new Sessions().open("01", null, "dnae1", "https://dnae1.smoothstreams.tv/view247/ch01q1.stream", 1);
+        s.duration = 10;
+        s.report(SLOW);
+
+        assertEquals("https://dnae1.smoothstreams.tv/view247/ch01q2.stream", s.getTarget());
+    }
+
+    @Test
+    public void singleVariantChannelKeepsItsUrl() {
+        String url = "https://dnae1.smoothstreams.tv/view247/ch61q1.stream";
+        Sessions.Session s = new Sessions().open("61", null, "dnae1", url, 0);
+        s.duration = 10;
+        assertEquals(url, s.getTarget());
+
+        s.report(SLOW);
+        assertEquals(url, s.getTarget());
+    }
+}
@@ -0,0 +1,95 @@
+/*
+    MIT License
+
+    Copyright (c) 2017 mr-notorious
+
+    Permission is hereby granted, free of charge, to any person obtaining a copy
+    of this software and associated documentation files (the "Software"), to deal
+    in the Software without restriction, including without limitation the rights
+    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+    copies of the Software, and to permit persons to whom the Software is
+    furnished to do so, subject to the following conditions:
+
+    The above copyright notice and this permission notice shall be included in all
+    copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+    SOFTWARE.
+ */
+
+package com.notorious.smoothproxy;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.InputStream;
+
+import okhttp3.ConnectionPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class TransferTest {
+    private static final int WARMUP = 50;
+    private static final int ROUNDS = 500;
+    private static final long HEAP_SLACK = 16 * 1024 * 1024;
+    private LocalUpstream upstream;
+
+    @Before
+    public void setUp() throws Exception {
+        upstream = new LocalUpstream(256 * 1024, 0);
+    }
+
+    @After
+    public void tearDown() {
+        upstream.stop();
+    }
+
+    @Test
+    public void soakKeepsConnectionsAndHeapFlat() throws Exception {
+        ConnectionPool pool = HttpClient.getClient().connectionPool();
+        run(WARMUP);
+        int connections = pool.connectionCount();
+        long heap = getUsedHeap();
+        long transfers = Transfer.getCount();
+
+        run(ROUNDS);
+
+        assertEquals(transfers + ROUNDS, Transfer.getCount());
+        assertTrue("connections grew to " + pool.connectionCount(), pool.connectionCount() <= Math.max(connections, 1));
+        long growth = getUsedHeap() - heap;
+        assertTrue("heap grew by " + growth, growth < HEAP_SLACK);
+    }
+
+    private void run(int rounds) throws Exception {
+        byte[] b = new byte[16384];
+        for (int i = 0; i < rounds; i++) {
+            HttpClient.Content c = HttpClient.getContent(upstream.getUrl("/ch01q1.stream/l_" + i + ".ts"));
+            assertNotNull(c);
+            InputStream in = c.response;
+            try {
+                // Every other transfer stops early, like a player hanging up mid-segment.
+                int limit = i % 2 == 0 ? Integer.MAX_VALUE : b.length * 2;
+                for (int n, total = 0; total < limit && (n = in.read(b)) != -1; total += n) ;
+            } finally {
+                c.close();
+            }
+        }
+    }
+
+    private static long getUsedHeap() throws InterruptedException {
+        Runtime r = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return r.totalMemory() - r.freeMemory();
+    }
+}
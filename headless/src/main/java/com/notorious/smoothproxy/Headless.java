@@ -0,0 +1,100 @@
+/*
+    MIT License
+
+    Copyright (c) 2017 mr-notorious
+
+    Permission is hereby granted, free of charge, to any person obtaining a copy
+    of this software and associated documentation files (the "Software"), to deal
+    in the Software without restriction, including without limitation the rights
+    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+    copies of the Software, and to permit persons to whom the Software is
+    furnished to do so, subject to the following conditions:
+
+    The above copyright notice and this permission notice shall be included in all
+    copies or substantial portions of the Software.
+
+    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+    SOFTWARE.
+ */
+
+package com.notorious.smoothproxy;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import fi.iki.elonen.NanoHTTPD;
+
+public final class Headless implements Ipc {
+    private static final Logger LOG = Logger.getLogger("SmoothProxy");
+    private final File cache;
+    private final String pattern;
+
+    private Headless(File cache, String pattern) {
+        this.cache = cache;
+        this.pattern = pattern;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Properties p = new Properties();
+        FileInputStream in = new FileInputStream(args.length > 0 ? args[0] : "smoothproxy.properties");
+        try {
+            p.load(in);
+        } finally {
+            in.close();
+        }
+
+        File cache = new File(p.getProperty("cache", "cache"));
+        if (!cache.isDirectory() && !cache.mkdirs()) throw new IllegalStateException("Cannot create " + cache);
+
+        Headless ipc = new Headless(cache, p.getProperty("pattern", "HH:mm"));
+        final SmoothProxy proxy = new SmoothProxy(p.getProperty("host", "127.0.0.1"), Integer.parseInt(p.getProperty("port", "8888")), ipc);
+        proxy.setWorkers(Integer.parseInt(p.getProperty("workers", "32")));
+        proxy.setCache(Integer.parseInt(p.getProperty("segmentcache", "32")));
+        proxy.setPrefetch(Integer.parseInt(p.getProperty("prefetch", "3")));
+        proxy.setTimeshift(Integer.parseInt(p.getProperty("timeshift", "0")));
+        proxy.setRecording(p.getProperty("record", ""));
+        proxy.setRecordingRetention(Integer.parseInt(p.getProperty("recordquota", "4096")), Integer.parseInt(p.getProperty("recorddays", "7")));
+        proxy.setEpgWindow(Integer.parseInt(p.getProperty("epgwindow", "0")));
+        proxy.setFastStart(Boolean.parseBoolean(p.getProperty("faststart", "false")));
+        if (!p.getProperty("servers", "").isEmpty()) proxy.setServers(p.getProperty("servers").split("\\s*,\\s*"));
+        proxy.init(
+                p.getProperty("username"),
+                p.getProperty("password"),
+                p.getProperty("service"),
+                p.getProperty("server"),
+                Integer.parseInt(p.getProperty("quality", "1"))
+        );
+        proxy.addAccounts(p.getProperty("accounts"));
+
+        proxy.start(NanoHTTPD.SOCKET_READ_TIMEOUT, false);
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                proxy.stop();
+            }
+        });
+        ipc.setNotification("Ready to serve on " + p.getProperty("host", "127.0.0.1") + ":" + p.getProperty("port", "8888") + ".");
+    }
+
+    @Override
+    public File getCacheDir() {
+        return cache;
+    }
+
+    @Override
+    public String getPattern() {
+        return pattern;
+    }
+
+    @Override
+    public void setNotification(String text) {
+        LOG.info(text);
+    }
+}